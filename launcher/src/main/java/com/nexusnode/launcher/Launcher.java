@@ -103,6 +103,7 @@ public final class Launcher extends Application {
             if (Controllers.getStage() == null)
                 return;
             Controllers.getStage().close();
+            ConfigHolder.flushConfig();
             Schedulers.shutdown();
             Controllers.shutdown();
             Platform.exit();
@@ -117,6 +118,7 @@ public final class Launcher extends Application {
             if (Controllers.getStage() == null)
                 return;
             Controllers.getStage().close();
+            ConfigHolder.flushConfig();
             Schedulers.shutdown();
             Controllers.shutdown();
             Lang.executeDelayed(OperatingSystem::forceGC, TimeUnit.SECONDS, 5, true);
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import com.nexusnode.launcher.auth.Account;
 import com.nexusnode.launcher.auth.AuthInfo;
@@ -38,11 +39,24 @@ import javafx.beans.binding.ObjectBinding;
 
 public class YggdrasilAccount extends Account {
 
+    /**
+     * How long a validated session is trusted without asking the auth server again.
+     */
+    private static final long SESSION_VALIDITY = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * {@link #prevalidate()} validates sessions validated longer ago than this, so that they never expire while in use.
+     */
+    private static final long SESSION_REVALIDATION = TimeUnit.MINUTES.toMillis(7);
+
     private final YggdrasilService service;
     private final UUID characterUUID;
     private final String username;
 
-    private boolean authenticated = false;
+    /**
+     * When the session was last known valid, 0 if not yet.
+     */
+    private volatile long validatedAt = 0;
     private YggdrasilSession session;
 
     protected YggdrasilAccount(YggdrasilService service, String username, YggdrasilSession session) {
@@ -76,7 +90,7 @@ public class YggdrasilAccount extends Account {
         }
 
         characterUUID = session.getSelectedProfile().getId();
-        authenticated = true;
+        validatedAt = System.currentTimeMillis();
 
         addProfilePropertiesListener();
     }
@@ -107,33 +121,50 @@ public class YggdrasilAccount extends Account {
 
     @Override
     public synchronized AuthInfo logIn() throws AuthenticationException {
-        if (!authenticated) {
-            if (service.validate(session.getAccessToken(), session.getClientToken())) {
-                authenticated = true;
-            } else {
-                YggdrasilSession acquiredSession;
-                try {
-                    acquiredSession = service.refresh(session.getAccessToken(), session.getClientToken(), null);
-                } catch (RemoteAuthenticationException e) {
-                    if ("ForbiddenOperationException".equals(e.getRemoteName())) {
-                        throw new CredentialExpiredException(e);
-                    } else {
-                        throw e;
-                    }
-                }
-                if (acquiredSession.getSelectedProfile() == null ||
-                        !acquiredSession.getSelectedProfile().getId().equals(characterUUID)) {
-                    throw new ServerResponseMalformedException("Selected profile changed");
-                }
+        if (!isValidatedWithin(SESSION_VALIDITY))
+            validateSession();
+
+        return session.toAuthInfo();
+    }
+
+    /**
+     * Validates the session in advance if it is about to expire, so that {@link #logIn()} does not have to
+     * ask the auth server when launching.
+     */
+    public synchronized void prevalidate() throws AuthenticationException {
+        if (!isValidatedWithin(SESSION_REVALIDATION))
+            validateSession();
+    }
 
-                session = acquiredSession;
+    private boolean isValidatedWithin(long interval) {
+        long elapsed = System.currentTimeMillis() - validatedAt;
+        return validatedAt != 0 && elapsed >= 0 && elapsed < interval;
+    }
 
-                authenticated = true;
-                invalidate();
+    private void validateSession() throws AuthenticationException {
+        if (service.validate(session.getAccessToken(), session.getClientToken())) {
+            validatedAt = System.currentTimeMillis();
+        } else {
+            YggdrasilSession acquiredSession;
+            try {
+                acquiredSession = service.refresh(session.getAccessToken(), session.getClientToken(), null);
+            } catch (RemoteAuthenticationException e) {
+                if ("ForbiddenOperationException".equals(e.getRemoteName())) {
+                    throw new CredentialExpiredException(e);
+                } else {
+                    throw e;
+                }
+            }
+            if (acquiredSession.getSelectedProfile() == null ||
+                    !acquiredSession.getSelectedProfile().getId().equals(characterUUID)) {
+                throw new ServerResponseMalformedException("Selected profile changed");
             }
-        }
 
-        return session.toAuthInfo();
+            session = acquiredSession;
+
+            validatedAt = System.currentTimeMillis();
+            invalidate();
+        }
     }
 
     @Override
@@ -162,7 +193,7 @@ public class YggdrasilAccount extends Account {
             session = acquiredSession;
         }
 
-        authenticated = true;
+        validatedAt = System.currentTimeMillis();
         invalidate();
         return session.toAuthInfo();
     }
@@ -189,7 +220,7 @@ public class YggdrasilAccount extends Account {
 
     @Override
     public void clearCache() {
-        authenticated = false;
+        validatedAt = 0;
         service.getProfileRepository().invalidate(characterUUID);
     }
 
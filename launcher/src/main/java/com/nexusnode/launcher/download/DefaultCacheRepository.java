@@ -19,8 +19,13 @@ package com.nexusnode.launcher.download;
 
 import com.google.gson.JsonParseException;
 import com.nexusnode.launcher.download.game.LibraryDownloadTask;
+import com.nexusnode.launcher.game.AssetIndex;
+import com.nexusnode.launcher.game.AssetObject;
+import com.nexusnode.launcher.game.GameRepository;
 import com.nexusnode.launcher.game.Library;
 import com.nexusnode.launcher.game.LibraryDownloadInfo;
+import com.nexusnode.launcher.game.Version;
+import com.nexusnode.launcher.game.VersionNotFoundException;
 import com.nexusnode.launcher.util.*;
 import com.nexusnode.launcher.util.gson.JsonUtils;
 import com.nexusnode.launcher.util.gson.TolerableValidationException;
@@ -37,13 +42,18 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public class DefaultCacheRepository extends CacheRepository {
     private Path librariesDir;
     private Path indexFile;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private Index index = null;
+    /**
+     * Entries of {@link #index} by library name, guarded by {@link #lock}.
+     */
+    private final SimpleMultimap<String, LibraryIndex> librariesByName = new SimpleMultimap<>(HashMap::new, HashSet::new);
+    private TimerTask pendingSave = null;
+    private final Object saveLock = new Object();
 
     public DefaultCacheRepository() {
         this(OperatingSystem.getWorkingDirectory("minecraft"));
@@ -70,6 +80,9 @@ public class DefaultCacheRepository extends CacheRepository {
             Logging.LOG.log(Level.WARNING, "Unable to read index file", e);
             index = new Index();
         } finally {
+            librariesByName.clear();
+            for (LibraryIndex libIndex : index.getLibraries())
+                librariesByName.put(libIndex.getName(), libIndex);
             lock.writeLock().unlock();
         }
     }
@@ -85,7 +98,7 @@ public class DefaultCacheRepository extends CacheRepository {
     public void tryCacheLibrary(Library library, Path jar) {
         lock.readLock().lock();
         try {
-            if (index.getLibraries().stream().anyMatch(it -> library.getName().equals(it.getName())))
+            if (librariesByName.containsKey(library.getName()))
                 return;
         } finally {
             lock.readLock().unlock();
@@ -95,11 +108,11 @@ public class DefaultCacheRepository extends CacheRepository {
             LibraryDownloadInfo info = library.getDownload();
             String hash = info.getSha1();
             if (hash != null) {
-                String checksum = Hex.encodeHex(DigestUtils.digest("SHA-1", jar));
+                String checksum = getHashIndex().getHash(jar, SHA1);
                 if (hash.equalsIgnoreCase(checksum))
                     cacheLibrary(library, jar, false);
             } else if (library.getChecksums() != null && !library.getChecksums().isEmpty()) {
-                if (LibraryDownloadTask.checksumValid(jar.toFile(), library.getChecksums()))
+                if (LibraryDownloadTask.checksumValid(jar, library.getChecksums(), getHashIndex()))
                     cacheLibrary(library, jar, true);
             } else {
                 // or we will not cache the library
@@ -127,10 +140,7 @@ public class DefaultCacheRepository extends CacheRepository {
 
         try {
             // check if this library is from Forge
-            List<LibraryIndex> libraries = index.getLibraries().stream()
-                    .filter(it -> it.getName().equals(library.getName()))
-                    .collect(Collectors.toList());
-            for (LibraryIndex libIndex : libraries) {
+            for (LibraryIndex libIndex : getLibraryIndexes(library.getName())) {
                 if (fileExists(SHA1, libIndex.getHash())) {
                     Path file = getFile(SHA1, libIndex.getHash());
                     if (libIndex.getType().equalsIgnoreCase(LibraryIndex.TYPE_FORGE)) {
@@ -165,6 +175,14 @@ public class DefaultCacheRepository extends CacheRepository {
         return Optional.empty();
     }
 
+    /**
+     * Must be called with the lock held. {@link SimpleMultimap#get(Object)} adds missing keys,
+     * so absent names are checked first to keep readers from modifying the map.
+     */
+    private Collection<LibraryIndex> getLibraryIndexes(String name) {
+        return librariesByName.containsKey(name) ? librariesByName.get(name) : Collections.emptySet();
+    }
+
     /**
      * Caches the library file to repository.
      *
@@ -177,17 +195,18 @@ public class DefaultCacheRepository extends CacheRepository {
     public Path cacheLibrary(Library library, Path path, boolean forge) throws IOException {
         String hash = library.getDownload().getSha1();
         if (hash == null)
-            hash = Hex.encodeHex(DigestUtils.digest(SHA1, path));
+            hash = getHashIndex().getHash(path, SHA1);
 
-        Path cache = getFile(SHA1, hash);
-        FileUtils.copyFile(path.toFile(), cache.toFile());
+        Path cache = cacheFile(path, SHA1, hash);
 
         Lock writeLock = lock.writeLock();
         writeLock.lock();
         try {
             LibraryIndex libIndex = new LibraryIndex(library.getName(), hash, forge ? LibraryIndex.TYPE_FORGE : LibraryIndex.TYPE_JAR);
-            index.getLibraries().add(libIndex);
-            saveIndex();
+            if (index.getLibraries().add(libIndex)) {
+                librariesByName.put(libIndex.getName(), libIndex);
+                scheduleSaveIndex();
+            }
         } finally {
             writeLock.unlock();
         }
@@ -195,12 +214,112 @@ public class DefaultCacheRepository extends CacheRepository {
         return cache;
     }
 
-    private void saveIndex() {
-        if (indexFile == null || index == null) return;
+    /**
+     * Evicts least recently used objects, keeping the game jars, libraries and asset objects
+     * of every version installed in the given repositories.
+     *
+     * @param repositories the game repositories whose versions are installed
+     * @throws IOException if the cache directory cannot be listed.
+     * @see #evict(java.util.function.Predicate)
+     */
+    public void evict(Collection<? extends GameRepository> repositories) throws IOException {
+        if (getMaxSize() <= 0) return;
+
+        Set<String> referenced = new HashSet<>();
+        for (GameRepository repository : repositories) {
+            for (Version version : repository.getVersions()) {
+                Version resolved;
+                try {
+                    resolved = repository.resolve(version);
+                } catch (VersionNotFoundException e) {
+                    continue;
+                }
+
+                addReference(referenced, resolved.getDownloadInfo().getSha1());
+                for (Library library : resolved.getLibraries()) {
+                    addReference(referenced, library.getDownload().getSha1());
+                    lock.readLock().lock();
+                    try {
+                        // Forge libraries are cached by the hash of the file.
+                        for (LibraryIndex libIndex : getLibraryIndexes(library.getName()))
+                            addReference(referenced, libIndex.getHash());
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+
+                try {
+                    AssetIndex assetIndex = repository.getAssetIndex(version.getId(), resolved.getAssetIndex().getId());
+                    for (AssetObject object : assetIndex.getObjects().values())
+                        addReference(referenced, object.getHash());
+                } catch (IOException | JsonParseException e) {
+                    // assets of this version have not been downloaded yet.
+                }
+            }
+        }
+
+        evict(referenced::contains);
+    }
+
+    private static void addReference(Set<String> referenced, String hash) {
+        if (hash != null)
+            referenced.add(hash.toLowerCase());
+    }
+
+    /**
+     * Saves index.json once no library has been cached for {@link #SAVE_DELAY} milliseconds,
+     * so that installing a version writes the index once instead of once per library.
+     * Must be called with the write lock held.
+     */
+    private void scheduleSaveIndex() {
+        if (pendingSave != null)
+            pendingSave.cancel();
+        pendingSave = new TimerTask() {
+            @Override
+            public void run() {
+                saveIndex();
+            }
+        };
+        SAVE_TIMER.schedule(pendingSave, SAVE_DELAY);
+    }
+
+    /**
+     * Saves index.json and access.json now if there are changes not saved yet.
+     */
+    public void flushIndex() {
+        flushAccessTimes();
+
+        lock.writeLock().lock();
         try {
-            FileUtils.writeText(indexFile.toFile(), JsonUtils.GSON.toJson(index));
-        } catch (IOException e) {
-            Logging.LOG.log(Level.SEVERE, "Unable to save index.json", e);
+            if (pendingSave == null)
+                return;
+            pendingSave.cancel();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        saveIndex();
+    }
+
+    private void saveIndex() {
+        // Serializes writers so that an older snapshot never overwrites a newer one.
+        synchronized (saveLock) {
+            Path indexFile;
+            String json;
+            lock.writeLock().lock();
+            try {
+                pendingSave = null;
+                indexFile = this.indexFile;
+                if (indexFile == null || index == null) return;
+                json = JsonUtils.GSON.toJson(index);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            try {
+                FileUtils.writeText(indexFile.toFile(), json);
+            } catch (IOException e) {
+                Logging.LOG.log(Level.SEVERE, "Unable to save index.json", e);
+            }
         }
     }
 
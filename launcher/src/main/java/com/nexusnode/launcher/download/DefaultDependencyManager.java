@@ -66,7 +66,7 @@ public class DefaultDependencyManager extends AbstractDependencyManager {
 
     @Override
     public Task<?> checkGameCompletionAsync(Version original, boolean integrityCheck) {
-        Version version = original.resolve(repository);
+        Version version = repository.resolve(original);
         return Task.allOf(
                 Task.composeAsync(() -> {
                     if (!repository.getVersionJar(version).exists())
@@ -73,7 +73,7 @@ public class MaintainTask extends Task<Version> {
     public static Version maintainPreservingPatches(GameRepository repository, Version version) {
         if (!version.isResolvedPreservingPatches())
             throw new IllegalArgumentException("MaintainTask requires independent game version");
-        Version newVersion = maintain(repository, version.resolve(repository));
+        Version newVersion = maintain(repository, repository.resolve(version));
         return newVersion.setPatches(version.getPatches()).markAsUnresolved();
     }
 
@@ -23,9 +23,12 @@ import com.nexusnode.launcher.game.AssetIndex;
 import com.nexusnode.launcher.game.AssetIndexInfo;
 import com.nexusnode.launcher.game.AssetObject;
 import com.nexusnode.launcher.game.Version;
+import com.nexusnode.launcher.task.DownloadScheduler;
 import com.nexusnode.launcher.task.FileDownloadTask;
+import com.nexusnode.launcher.task.Schedulers;
 import com.nexusnode.launcher.task.Task;
 import com.nexusnode.launcher.util.CacheRepository;
+import com.nexusnode.launcher.util.FileHashIndex;
 import com.nexusnode.launcher.util.Logging;
 import com.nexusnode.launcher.util.gson.JsonUtils;
 import com.nexusnode.launcher.util.io.FileUtils;
@@ -33,10 +36,16 @@ import com.nexusnode.launcher.util.io.FileUtils;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -60,7 +69,7 @@ public final class GameAssetDownloadTask extends Task<Void> {
      */
     public GameAssetDownloadTask(AbstractDependencyManager dependencyManager, Version version, boolean forceDownloadingIndex, boolean integrityCheck) {
         this.dependencyManager = dependencyManager;
-        this.version = version.resolve(dependencyManager.getGameRepository());
+        this.version = dependencyManager.getGameRepository().resolve(version);
         this.assetIndexInfo = this.version.getAssetIndex();
         this.assetIndexFile = dependencyManager.getGameRepository().getIndexFile(version.getId(), assetIndexInfo.getId());
         this.integrityCheck = integrityCheck;
@@ -95,34 +104,45 @@ public final class GameAssetDownloadTask extends Task<Void> {
             throw new GameAssetIndexDownloadTask.GameAssetIndexMalformedException();
         }
 
-        int progress = 0;
-        for (AssetObject assetObject : index.getObjects().values()) {
-            if (isCancelled())
-                throw new InterruptedException();
+        CacheRepository cacheRepository = dependencyManager.getCacheRepository();
+        FileHashIndex hashIndex = cacheRepository.getHashIndex();
 
+        // Objects sharing a hash share a file, verify and download each of them only once.
+        // Objects without a hash have no location, so they can be neither looked up nor downloaded.
+        Set<String> hashes = new HashSet<>();
+        List<AssetObject> objects = index.getObjects().values().stream()
+                .filter(assetObject -> assetObject.getHash() != null && hashes.add(assetObject.getHash()))
+                .collect(Collectors.toList());
+
+        // Objects are verified concurrently on the io threads.
+        // Unchanged files are looked up in the hash index instead of being hashed again.
+        AtomicInteger progress = new AtomicInteger(0);
+        List<CompletableFuture<Boolean>> verifications = objects.stream()
+                .map(assetObject -> CompletableFuture.supplyAsync(() -> needsDownload(assetObject, cacheRepository, hashIndex, progress, objects.size()), Schedulers.io()))
+                .collect(Collectors.toList());
+
+        List<AssetObject> missing = new ArrayList<>();
+        for (int i = 0; i < objects.size(); i++)
+            if (verifications.get(i).join())
+                missing.add(objects.get(i));
+
+        hashIndex.save();
+
+        if (isCancelled())
+            throw new InterruptedException();
+
+        for (AssetObject assetObject : missing) {
             File file = dependencyManager.getGameRepository().getAssetObject(version.getId(), assetIndexInfo.getId(), assetObject);
-            boolean download = !file.isFile();
-            try {
-                if (!download && integrityCheck && !assetObject.validateChecksum(file.toPath(), true))
-                    download = true;
-            } catch (IOException e) {
-                Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + file.toPath(), e);
-            }
-            if (download) {
-                List<URL> urls = dependencyManager.getDownloadProvider().getAssetObjectCandidates(assetObject.getLocation());
-
-                FileDownloadTask task = new FileDownloadTask(urls, file, new FileDownloadTask.IntegrityCheck("SHA-1", assetObject.getHash()));
-                task.setName(assetObject.getHash());
-                dependencies.add(task
-                        .setCacheRepository(dependencyManager.getCacheRepository())
-                        .setCaching(true)
-                        .setCandidate(dependencyManager.getCacheRepository().getCommonDirectory()
-                                .resolve("assets").resolve("objects").resolve(assetObject.getLocation())).withCounter());
-            } else {
-                dependencyManager.getCacheRepository().tryCacheFile(file.toPath(), CacheRepository.SHA1, assetObject.getHash());
-            }
+            List<URL> urls = dependencyManager.getDownloadProvider().getAssetObjectCandidates(assetObject.getLocation());
 
-            updateProgress(++progress, index.getObjects().size());
+            FileDownloadTask task = new FileDownloadTask(urls, file, new FileDownloadTask.IntegrityCheck("SHA-1", assetObject.getHash()));
+            task.setName(assetObject.getHash());
+            dependencies.add(task
+                    .setCacheRepository(cacheRepository)
+                    .setCaching(true)
+                    .setPriority(DownloadScheduler.Priority.LOW)
+                    .setCandidate(cacheRepository.getCommonDirectory()
+                            .resolve("assets").resolve("objects").resolve(assetObject.getLocation())).withCounter());
         }
 
         if (!dependencies.isEmpty()) {
@@ -130,6 +150,31 @@ public final class GameAssetDownloadTask extends Task<Void> {
         }
     }
 
+    private boolean needsDownload(AssetObject assetObject, CacheRepository cacheRepository, FileHashIndex hashIndex, AtomicInteger progress, int total) {
+        if (isCancelled())
+            return false;
+
+        File file = dependencyManager.getGameRepository().getAssetObject(version.getId(), assetIndexInfo.getId(), assetObject);
+        boolean download = !file.isFile();
+        try {
+            if (!download && integrityCheck && !hashIndex.getHash(file.toPath(), CacheRepository.SHA1).equalsIgnoreCase(assetObject.getHash()))
+                download = true;
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + file.toPath(), e);
+        }
+
+        if (!download) {
+            try {
+                cacheRepository.tryCacheFile(file.toPath(), CacheRepository.SHA1, assetObject.getHash());
+            } catch (IOException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to cache asset object " + file.toPath(), e);
+            }
+        }
+
+        updateProgress(progress.incrementAndGet(), total);
+        return download;
+    }
+
     public static final boolean DOWNLOAD_INDEX_FORCIBLY = true;
     public static final boolean DOWNLOAD_INDEX_IF_NECESSARY = false;
 }
@@ -20,6 +20,7 @@ package com.nexusnode.launcher.download.game;
 import com.nexusnode.launcher.download.AbstractDependencyManager;
 import com.nexusnode.launcher.game.AssetIndexInfo;
 import com.nexusnode.launcher.game.Version;
+import com.nexusnode.launcher.task.DownloadScheduler;
 import com.nexusnode.launcher.task.FileDownloadTask;
 import com.nexusnode.launcher.task.Task;
 
@@ -66,7 +67,8 @@ public final class GameAssetIndexDownloadTask extends Task<Void> {
         dependencies.add(new FileDownloadTask(
                 dependencyManager.getDownloadProvider().injectURLWithCandidates(assetIndexInfo.getUrl()),
                 assetIndexFile
-        ).setCacheRepository(dependencyManager.getCacheRepository()));
+        ).setCacheRepository(dependencyManager.getCacheRepository())
+                .setPriority(DownloadScheduler.Priority.HIGH));
     }
 
 
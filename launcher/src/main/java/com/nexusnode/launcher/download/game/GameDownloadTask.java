@@ -42,7 +42,7 @@ public final class GameDownloadTask extends Task<Void> {
     public GameDownloadTask(DefaultDependencyManager dependencyManager, String gameVersion, Version version) {
         this.dependencyManager = dependencyManager;
         this.gameVersion = gameVersion;
-        this.version = version.resolve(dependencyManager.getGameRepository());
+        this.version = dependencyManager.getGameRepository().resolve(version);
 
         setSignificance(TaskSignificance.MODERATE);
     }
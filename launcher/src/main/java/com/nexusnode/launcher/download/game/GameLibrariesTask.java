@@ -20,7 +20,9 @@ package com.nexusnode.launcher.download.game;
 import com.nexusnode.launcher.download.AbstractDependencyManager;
 import com.nexusnode.launcher.game.Library;
 import com.nexusnode.launcher.game.Version;
+import com.nexusnode.launcher.task.Schedulers;
 import com.nexusnode.launcher.task.Task;
+import com.nexusnode.launcher.util.FileHashIndex;
 import com.nexusnode.launcher.util.Logging;
 import com.nexusnode.launcher.util.io.FileUtils;
 
@@ -29,8 +31,10 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  * This task is to download game libraries.
@@ -53,7 +57,7 @@ public final class GameLibrariesTask extends Task<Void> {
      * @param version           the game version
      */
     public GameLibrariesTask(AbstractDependencyManager dependencyManager, Version version, boolean integrityCheck) {
-        this(dependencyManager, version, integrityCheck, version.resolve(dependencyManager.getGameRepository()).getLibraries());
+        this(dependencyManager, version, integrityCheck, dependencyManager.getGameRepository().resolve(version).getLibraries());
     }
 
     /**
@@ -78,36 +82,81 @@ public final class GameLibrariesTask extends Task<Void> {
 
     @Override
     public void execute() {
-        libraries.stream().filter(Library::appliesToCurrentEnvironment).forEach(library -> {
-            File file = dependencyManager.getGameRepository().getLibraryFile(version, library);
-            Path jar = file.toPath();
-            boolean download = !file.isFile();
-            try {
-                if (!download && integrityCheck && !library.getDownload().validateChecksum(jar, true)) download = true;
-                if (!download && integrityCheck &&
-                        library.getChecksums() != null && !library.getChecksums().isEmpty() &&
-                        !LibraryDownloadTask.checksumValid(file, library.getChecksums())) download = true;
-                if (!download && integrityCheck) {
-                    String ext = FileUtils.getExtension(file);
-                    if (ext.equals("jar")) {
-                        try (JarFile jarFile = new JarFile(file)) {
-                            jarFile.getManifest();
-                        } catch (IOException ignored) {
-                            // the Jar file is malformed, so re-download it.
-                            download = true;
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + jar, e);
-            }
+        FileHashIndex hashIndex = dependencyManager.getCacheRepository().getHashIndex();
+        List<Library> applicable = libraries.stream().filter(Library::appliesToCurrentEnvironment).collect(Collectors.toList());
 
-            if (download) {
+        // Libraries are verified concurrently, each jar is read at most once,
+        // and jars untouched since last verified are not read at all thanks to the hash index.
+        List<CompletableFuture<Boolean>> verifications = applicable.stream()
+                .map(library -> CompletableFuture.supplyAsync(() -> needsDownload(library, hashIndex), Schedulers.io()))
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < applicable.size(); i++) {
+            Library library = applicable.get(i);
+            File file = dependencyManager.getGameRepository().getLibraryFile(version, library);
+            if (verifications.get(i).join()) {
                 dependencies.add(new LibraryDownloadTask(dependencyManager, file, library));
             } else {
                 dependencyManager.getCacheRepository().tryCacheLibrary(library, file.toPath());
             }
-        });
+        }
+        hashIndex.save();
+
+        prefetchProbes();
+    }
+
+    private boolean needsDownload(Library library, FileHashIndex hashIndex) {
+        File file = dependencyManager.getGameRepository().getLibraryFile(version, library);
+        Path jar = file.toPath();
+        if (!file.isFile())
+            return true;
+        if (!integrityCheck)
+            return false;
+
+        try {
+            String sha1 = library.getDownload().getSha1();
+            if (sha1 != null && !hashIndex.getHash(jar, "SHA-1").equalsIgnoreCase(sha1))
+                return true;
+            if (!LibraryDownloadTask.checksumValid(jar, library.getChecksums(), hashIndex))
+                return true;
+
+            // A jar matching a known SHA-1 is intact, otherwise check that it is not malformed.
+            if (sha1 == null && "jar".equals(FileUtils.getExtension(file))) {
+                try (JarFile jarFile = new JarFile(file)) {
+                    jarFile.getManifest();
+                } catch (IOException ignored) {
+                    // the Jar file is malformed, so re-download it.
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + jar, e);
+        }
+        return false;
+    }
+
+    /**
+     * Probes the pack.xz of all libraries to download concurrently,
+     * instead of one by one when each {@link LibraryDownloadTask} starts.
+     */
+    private void prefetchProbes() {
+        CompletableFuture<?>[] probes = dependencies.stream()
+                .filter(LibraryDownloadTask.class::isInstance)
+                .map(task -> CompletableFuture.runAsync(((LibraryDownloadTask) task)::probePackXZ, Schedulers.io()))
+                .toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(probes).join();
+        dependencyManager.getCacheRepository().getProbeCache().save();
+    }
+
+    @Override
+    public boolean doPostExecute() {
+        return true;
+    }
+
+    @Override
+    public void postExecute() {
+        dependencyManager.getCacheRepository().flushIndex();
+        dependencyManager.getCacheRepository().getProbeCache().save();
     }
 
 }
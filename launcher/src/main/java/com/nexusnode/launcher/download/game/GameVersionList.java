@@ -23,6 +23,7 @@ import com.nexusnode.launcher.task.GetTask;
 import com.nexusnode.launcher.task.OkHttpResponseFuture;
 import com.nexusnode.launcher.task.Task;
 import com.nexusnode.launcher.util.gson.JsonUtils;
+import com.nexusnode.launcher.util.io.HttpTransport;
 import com.nexusnode.launcher.util.io.NetworkUtils;
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
@@ -65,7 +66,7 @@ public final class GameVersionList extends VersionList<GameRemoteVersion> {
 
     @Override
     public CompletableFuture<?> refreshFuture() {
-        OkHttpClient client = new OkHttpClient.Builder().build();
+        OkHttpClient client = HttpTransport.getInstance().getClient();
         Request request = new Request.Builder()
                 .url(downloadProvider.getVersionListURL())
                 .build();
@@ -20,25 +20,34 @@ package com.nexusnode.launcher.download.game;
 import com.nexusnode.launcher.download.AbstractDependencyManager;
 import com.nexusnode.launcher.download.ArtifactMalformedException;
 import com.nexusnode.launcher.download.DefaultCacheRepository;
+import com.nexusnode.launcher.download.DownloadProvider;
 import com.nexusnode.launcher.game.Library;
 import com.nexusnode.launcher.task.DownloadException;
 import com.nexusnode.launcher.task.FileDownloadTask;
 import com.nexusnode.launcher.task.FileDownloadTask.IntegrityCheck;
 import com.nexusnode.launcher.task.Task;
+import com.nexusnode.launcher.util.DigestUtils;
+import com.nexusnode.launcher.util.FileHashIndex;
 import com.nexusnode.launcher.util.Logging;
 import com.nexusnode.launcher.util.StringUtils;
 import com.nexusnode.launcher.util.io.CompressingUtils;
-import com.nexusnode.launcher.util.io.FileUtils;
 import com.nexusnode.launcher.util.io.IOUtils;
 import com.nexusnode.launcher.util.io.NetworkUtils;
+import org.tukaani.xz.XZIOException;
 import org.tukaani.xz.XZInputStream;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.jar.*;
 import java.util.logging.Level;
@@ -100,7 +109,7 @@ public class LibraryDownloadTask extends Task<Void> {
             else
                 throw new LibraryDownloadException(library, t);
         } else {
-            if (xz) unpackLibrary(jar, Files.readAllBytes(xzFile.toPath()));
+            if (xz) unpackLibrary(jar, xzFile.toPath());
             if (!checksumValid(jar, library.getChecksums())) {
                 jar.delete();
                 throw new IOException("Checksum failed for " + library);
@@ -118,7 +127,7 @@ public class LibraryDownloadTask extends Task<Void> {
         Optional<Path> libPath = cacheRepository.getLibrary(originalLibrary);
         if (libPath.isPresent()) {
             try {
-                FileUtils.copyFile(libPath.get().toFile(), jar);
+                cacheRepository.materialize(libPath.get(), jar.toPath());
                 cached = true;
                 return;
             } catch (IOException e) {
@@ -128,27 +137,52 @@ public class LibraryDownloadTask extends Task<Void> {
             }
         }
 
+        boolean packXZ;
         try {
-            URL packXz = NetworkUtils.toURL(dependencyManager.getDownloadProvider().injectURL(url) + ".pack.xz");
-            if (NetworkUtils.urlExists(packXz)) {
-                List<URL> urls = dependencyManager.getDownloadProvider().injectURLWithCandidates(url + ".pack.xz");
-                task = new FileDownloadTask(urls, xzFile, null)
-                        .setCacheRepository(cacheRepository)
-                        .setCaching(true);
-                xz = true;
-            } else {
-                List<URL> urls = dependencyManager.getDownloadProvider().injectURLWithCandidates(url);
-                task = new FileDownloadTask(urls, jar,
-                        library.getDownload().getSha1() != null ? new IntegrityCheck("SHA-1", library.getDownload().getSha1()) : null)
-                        .setCacheRepository(cacheRepository)
-                        .setCaching(true);
-                xz = false;
-            }
+            packXZ = packXZExists();
         } catch (IOException e) {
-            throw new LibraryDownloadException(library, e);
+            Logging.LOG.log(Level.FINE, "Unable to probe pack.xz of " + library + ", downloading the jar", e);
+            packXZ = false;
+        }
+
+        if (packXZ) {
+            List<URL> urls = dependencyManager.getDownloadProvider().injectURLWithCandidates(url + ".pack.xz");
+            task = new FileDownloadTask(urls, xzFile, null)
+                    .setCacheRepository(cacheRepository)
+                    .setCaching(true);
+            xz = true;
+        } else {
+            List<URL> urls = dependencyManager.getDownloadProvider().injectURLWithCandidates(url);
+            task = new FileDownloadTask(urls, jar,
+                    library.getDownload().getSha1() != null ? new IntegrityCheck("SHA-1", library.getDownload().getSha1()) : null)
+                    .setCacheRepository(cacheRepository)
+                    .setCaching(true);
+            xz = false;
         }
     }
 
+    /**
+     * Resolves whether the pack.xz of this library exists ahead of {@link #preExecute()},
+     * which then finds the answer in the probe cache.
+     * Does nothing if the library is cached.
+     */
+    public void probePackXZ() {
+        if (cacheRepository.getLibrary(originalLibrary).isPresent())
+            return;
+
+        try {
+            packXZExists();
+        } catch (IOException e) {
+            Logging.LOG.log(Level.FINE, "Unable to probe pack.xz of " + library, e);
+        }
+    }
+
+    private boolean packXZExists() throws IOException {
+        DownloadProvider provider = dependencyManager.getDownloadProvider();
+        URL packXz = NetworkUtils.toURL(provider.injectURL(url) + ".pack.xz");
+        return cacheRepository.getProbeCache().exists(packXz, provider.getClass().getName());
+    }
+
     @Override
     public boolean doPostExecute() {
         return true;
@@ -162,33 +196,101 @@ public class LibraryDownloadTask extends Task<Void> {
 
     public static boolean checksumValid(File libPath, List<String> checksums) {
         try {
-            if (checksums == null || checksums.isEmpty()) {
-                return true;
-            }
-            byte[] fileData = Files.readAllBytes(libPath.toPath());
-            boolean valid = checksums.contains(encodeHex(digest("SHA-1", fileData)));
-            if (!valid && libPath.getName().endsWith(".jar")) {
-                valid = validateJar(fileData, checksums);
-            }
-            return valid;
+            return checksumValid(libPath.toPath(), checksums, null);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return false;
     }
 
-    private static boolean validateJar(byte[] data, List<String> checksums) throws IOException {
+    /**
+     * Verifies the file against checksums provided by Forge.
+     * The file is valid if its SHA-1 is listed, or if it is a jar whose checksums.sha1 entry is listed
+     * and all entries listed there match. The file is read at most once, and not at all if the hash index
+     * recorded the result for the file and the same checksums before.
+     *
+     * @param file the file to verify
+     * @param checksums the valid SHA-1 checksums, the file is valid if null or empty.
+     * @param hashIndex the index to look the SHA-1 of the file and previous results up in, null to compute them.
+     * @return true if the file is valid.
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean checksumValid(Path file, List<String> checksums, FileHashIndex hashIndex) throws IOException {
+        if (checksums == null || checksums.isEmpty())
+            return true;
+
+        boolean isJar = file.getFileName().toString().endsWith(".jar");
+        String verification = isJar ? getVerification(checksums) : null;
+        if (hashIndex != null) {
+            String hash = hashIndex.getRecordedHash(file, "SHA-1");
+            if (hash != null) {
+                if (checksums.contains(hash))
+                    return true;
+                if (!isJar)
+                    return false;
+                if (hashIndex.isVerified(file, "SHA-1", verification))
+                    return true;
+            }
+        }
+
+        MessageDigest fileDigest = DigestUtils.getDigest("SHA-1");
+        boolean jarValid = false;
+        try (DigestInputStream input = new DigestInputStream(new BufferedInputStream(Files.newInputStream(file)), fileDigest)) {
+            if (isJar) {
+                try {
+                    jarValid = validateJar(input, checksums);
+                } catch (IOException e) {
+                    // not a valid jar, the SHA-1 of the whole file may still match.
+                }
+            }
+
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) >= 0) {
+                // digest the rest of the file, such as the central directory of the jar.
+            }
+        }
+
+        String hash = encodeHex(fileDigest.digest());
+        if (hashIndex != null)
+            hashIndex.put(file, "SHA-1", hash, jarValid ? verification : null);
+        return jarValid || checksums.contains(hash);
+    }
+
+    /**
+     * @return identifies the checksums a jar is verified against in the hash index, regardless of their order.
+     */
+    private static String getVerification(List<String> checksums) {
+        List<String> sorted = new ArrayList<>(checksums);
+        Collections.sort(sorted);
+        return "checksums.sha1:" + encodeHex(digest("SHA-1", String.join("\n", sorted)));
+    }
+
+    /**
+     * Streams the jar, hashing every entry, and checks them against the checksums.sha1 entry.
+     * Does not close {@code input}.
+     */
+    private static boolean validateJar(InputStream input, List<String> checksums) throws IOException {
         HashMap<String, String> files = new HashMap<>();
         String[] hashes = null;
-        JarInputStream jar = new JarInputStream(new ByteArrayInputStream(data));
+        JarInputStream jar = new JarInputStream(new FilterInputStream(input) {
+            @Override
+            public void close() {
+                // leave the underlying stream open for the caller.
+            }
+        });
+        byte[] buffer = new byte[8192];
         JarEntry entry = jar.getNextJarEntry();
         while (entry != null) {
-            byte[] eData = IOUtils.readFullyWithoutClosing(jar);
             if (entry.getName().equals("checksums.sha1")) {
+                byte[] eData = IOUtils.readFullyWithoutClosing(jar);
                 hashes = new String(eData, StandardCharsets.UTF_8).split("\n");
-            }
-            if (!entry.isDirectory()) {
                 files.put(entry.getName(), encodeHex(digest("SHA-1", eData)));
+            } else if (!entry.isDirectory()) {
+                MessageDigest entryDigest = DigestUtils.getDigest("SHA-1");
+                int read;
+                while ((read = jar.read(buffer)) >= 0)
+                    entryDigest.update(buffer, 0, read);
+                files.put(entry.getName(), encodeHex(entryDigest.digest()));
             }
             entry = jar.getNextJarEntry();
         }
@@ -219,43 +321,74 @@ public class LibraryDownloadTask extends Task<Void> {
         return false;
     }
 
-    private static void unpackLibrary(File dest, byte[] src) throws IOException {
+    /**
+     * Largest checksums block accepted at the end of a pack.xz, far larger than any real checksums.sha1.
+     */
+    private static final int MAX_CHECKSUMS_LENGTH = 1024 * 1024;
+
+    /**
+     * Unpacks a pack.xz library into a jar.
+     *
+     * The decompressed stream is a pack200 archive, followed by the content of checksums.sha1,
+     * its length as a little endian int, and "SIGN". The stream is decompressed to a temporary pack file,
+     * then the trailer is read back from the end of the file and cut off, so memory usage does not
+     * depend on the size of the library.
+     */
+    private static void unpackLibrary(File dest, Path src) throws IOException {
         if (dest.exists())
             if (!dest.delete())
                 throw new IOException("Unable to delete file " + dest);
 
-        byte[] decompressed;
+        Path temp = Files.createTempFile("minecraft", ".pack");
         try {
-            decompressed = IOUtils.readFullyAsByteArray(new XZInputStream(new ByteArrayInputStream(src)));
-        } catch (IOException e) {
-            throw new ArtifactMalformedException("Library " + dest + " is malformed");
-        }
-
-        String end = new String(decompressed, decompressed.length - 4, 4);
-        if (!end.equals("SIGN"))
-            throw new IOException("Unpacking failed, signature missing " + end);
+            try (InputStream in = new XZInputStream(new BufferedInputStream(Files.newInputStream(src)));
+                 OutputStream out = Files.newOutputStream(temp)) {
+                IOUtils.copyTo(in, out);
+            } catch (XZIOException | EOFException e) {
+                throw new ArtifactMalformedException("Library " + dest + " is malformed");
+            }
 
-        int x = decompressed.length;
-        int len = decompressed[(x - 8)] & 0xFF | (decompressed[(x - 7)] & 0xFF) << 8 | (decompressed[(x - 6)] & 0xFF) << 16 | (decompressed[(x - 5)] & 0xFF) << 24;
+            byte[] checksums;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (size < 8)
+                    throw new IOException("Unpacking failed, signature missing");
 
-        Path temp = Files.createTempFile("minecraft", ".pack");
+                ByteBuffer tail = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, tail, size - 8);
+                String end = new String(tail.array(), 4, 4, StandardCharsets.ISO_8859_1);
+                if (!end.equals("SIGN"))
+                    throw new IOException("Unpacking failed, signature missing " + end);
 
-        byte[] checksums = Arrays.copyOfRange(decompressed, decompressed.length - len - 8, decompressed.length - 8);
+                int len = tail.getInt(0);
+                if (len < 0 || len > MAX_CHECKSUMS_LENGTH || len > size - 8)
+                    throw new IOException("Unpacking failed, malformed checksums length " + len);
 
-        try (OutputStream out = Files.newOutputStream(temp)) {
-            out.write(decompressed, 0, decompressed.length - len - 8);
-        }
+                ByteBuffer checksumsBuffer = ByteBuffer.allocate(len);
+                readFully(channel, checksumsBuffer, size - 8 - len);
+                checksums = checksumsBuffer.array();
+                channel.truncate(size - 8 - len);
+            }
 
-        try (FileOutputStream jarBytes = new FileOutputStream(dest); JarOutputStream jos = new JarOutputStream(jarBytes)) {
-            Pack200.newUnpacker().unpack(temp.toFile(), jos);
+            try (FileOutputStream jarBytes = new FileOutputStream(dest); JarOutputStream jos = new JarOutputStream(jarBytes)) {
+                Pack200.newUnpacker().unpack(temp.toFile(), jos);
 
-            JarEntry checksumsFile = new JarEntry("checksums.sha1");
-            checksumsFile.setTime(0L);
-            jos.putNextEntry(checksumsFile);
-            jos.write(checksums);
-            jos.closeEntry();
+                JarEntry checksumsFile = new JarEntry("checksums.sha1");
+                checksumsFile.setTime(0L);
+                jos.putNextEntry(checksumsFile);
+                jos.write(checksums);
+                jos.closeEntry();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
+    }
 
-        Files.delete(temp);
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException();
+        }
     }
 }
@@ -19,8 +19,8 @@ package com.nexusnode.launcher.event;
 
 import com.nexusnode.launcher.util.Logging;
 
-import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 /**
  *
@@ -32,13 +32,12 @@ public final class EventBus {
 
     @SuppressWarnings("unchecked")
     public <T extends Event> EventManager<T> channel(Class<T> clazz) {
-        events.putIfAbsent(clazz, new EventManager<>());
-        return (EventManager<T>) events.get(clazz);
+        return (EventManager<T>) events.computeIfAbsent(clazz, any -> new EventManager<>());
     }
 
     @SuppressWarnings("unchecked")
     public Event.Result fireEvent(Event obj) {
-        Logging.LOG.info(obj + " gets fired");
+        Logging.LOG.log(Level.FINE, () -> obj + " gets fired");
 
         return channel((Class<Event>) obj.getClass()).fireEvent(obj);
     }
@@ -20,19 +20,28 @@ package com.nexusnode.launcher.event;
 import com.nexusnode.launcher.util.SimpleMultimap;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
-import java.util.HashSet;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
+ * Handlers are registered under a lock, and events are fired without any lock
+ * to a snapshot of the handlers ordered by priority.
  *
  * @author bluebird6900
  */
 public final class EventManager<T extends Event> {
 
     private final SimpleMultimap<EventPriority, Consumer<T>> handlers
-            = new SimpleMultimap<>(() -> new EnumMap<>(EventPriority.class), CopyOnWriteArraySet::new);
+            = new SimpleMultimap<>(() -> new EnumMap<>(EventPriority.class), LinkedHashSet::new);
+    private volatile List<Consumer<T>> snapshot = Collections.emptyList();
 
     public Consumer<T> registerWeak(Consumer<T> consumer) {
         register(new WeakListener(consumer));
@@ -49,8 +58,10 @@ public final class EventManager<T extends Event> {
     }
 
     public synchronized void register(Consumer<T> consumer, EventPriority priority) {
-        if (!handlers.get(priority).contains(consumer))
+        if (!handlers.get(priority).contains(consumer)) {
             handlers.put(priority, consumer);
+            updateSnapshot();
+        }
     }
 
     public void register(Runnable runnable) {
@@ -61,11 +72,30 @@ public final class EventManager<T extends Event> {
         register(t -> runnable.run(), priority);
     }
 
-    public synchronized Event.Result fireEvent(T event) {
-        for (EventPriority priority : EventPriority.values()) {
-            for (Consumer<T> handler : handlers.get(priority))
-                handler.accept(event);
-        }
+    /**
+     * Delivers events to {@code consumer} on {@code executor}, after the event has been fired.
+     * Events fired before the executor gets to a delivery are delivered together in the order fired,
+     * so a slow executor, such as the JavaFX application thread, is not flooded.
+     * The consumer cannot change the result of the events.
+     *
+     * @return the consumer
+     */
+    public Consumer<List<T>> registerAsync(Consumer<List<T>> consumer, Executor executor) {
+        register(new AsyncListener(consumer, null, executor), EventPriority.LOWEST);
+        return consumer;
+    }
+
+    /**
+     * Same as {@link #registerAsync(Consumer, Executor)}, but only weakly references {@code consumer}.
+     */
+    public Consumer<List<T>> registerWeakAsync(Consumer<List<T>> consumer, Executor executor) {
+        register(new AsyncListener(null, new WeakReference<>(consumer), executor), EventPriority.LOWEST);
+        return consumer;
+    }
+
+    public Event.Result fireEvent(T event) {
+        for (Consumer<T> handler : snapshot)
+            handler.accept(event);
 
         if (event.hasResult())
             return event.getResult();
@@ -74,7 +104,17 @@ public final class EventManager<T extends Event> {
     }
 
     private synchronized void removeConsumer(Consumer<T> consumer) {
-        handlers.removeValue(consumer);
+        if (handlers.removeValue(consumer))
+            updateSnapshot();
+    }
+
+    private void updateSnapshot() {
+        List<Consumer<T>> all = new ArrayList<>();
+        for (EventPriority priority : EventPriority.values()) {
+            if (handlers.containsKey(priority))
+                all.addAll(handlers.get(priority));
+        }
+        snapshot = Collections.unmodifiableList(all);
     }
 
     private class WeakListener implements Consumer<T> {
@@ -94,4 +134,48 @@ public final class EventManager<T extends Event> {
             }
         }
     }
+
+    private class AsyncListener implements Consumer<T> {
+        private final Consumer<List<T>> listener;
+        private final WeakReference<Consumer<List<T>>> weakListener;
+        private final Executor executor;
+        private final Queue<T> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        AsyncListener(Consumer<List<T>> listener, WeakReference<Consumer<List<T>>> weakListener, Executor executor) {
+            this.listener = listener;
+            this.weakListener = weakListener;
+            this.executor = executor;
+        }
+
+        private Consumer<List<T>> getListener() {
+            return listener != null ? listener : weakListener.get();
+        }
+
+        @Override
+        public void accept(T t) {
+            if (getListener() == null) {
+                removeConsumer(this);
+                return;
+            }
+
+            pending.add(t);
+            if (scheduled.compareAndSet(false, true))
+                executor.execute(this::deliver);
+        }
+
+        private void deliver() {
+            scheduled.set(false);
+            List<T> batch = new ArrayList<>();
+            for (T event; (event = pending.poll()) != null; )
+                batch.add(event);
+
+            Consumer<List<T>> target = getListener();
+            if (target == null) {
+                removeConsumer(this);
+            } else if (!batch.isEmpty()) {
+                target.accept(batch);
+            }
+        }
+    }
 }
@@ -28,28 +28,43 @@ import com.nexusnode.launcher.event.RefreshedVersionsEvent;
 import com.nexusnode.launcher.event.RefreshingVersionsEvent;
 import com.nexusnode.launcher.event.RemoveVersionEvent;
 import com.nexusnode.launcher.event.RenameVersionEvent;
+import com.nexusnode.launcher.task.Schedulers;
 import com.nexusnode.launcher.task.Task;
+import com.nexusnode.launcher.util.CacheRepository;
+import com.nexusnode.launcher.util.DigestUtils;
+import com.nexusnode.launcher.util.Hex;
 import com.nexusnode.launcher.util.Lang;
+import com.nexusnode.launcher.util.PersistentIndex;
 import com.nexusnode.launcher.util.ToStringBuilder;
 import com.nexusnode.launcher.util.gson.JsonUtils;
 import com.nexusnode.launcher.util.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.nexusnode.launcher.util.Logging.LOG;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * An implementation of classic Minecraft game repository.
@@ -60,6 +75,8 @@ public class DefaultGameRepository implements GameRepository {
 
     private File baseDirectory;
     protected Map<String, Version> versions;
+    private final Map<Path, ParsedVersion> parsedVersions = new ConcurrentHashMap<>();
+    private final Map<String, ResolvedVersion> resolvedVersions = new ConcurrentHashMap<>();
 
     public DefaultGameRepository(File baseDirectory) {
         this.baseDirectory = baseDirectory;
@@ -71,6 +88,8 @@ public class DefaultGameRepository implements GameRepository {
 
     public void setBaseDirectory(File baseDirectory) {
         this.baseDirectory = baseDirectory;
+        parsedVersions.clear();
+        resolvedVersions.clear();
     }
 
     @Override
@@ -85,6 +104,54 @@ public class DefaultGameRepository implements GameRepository {
         return versions.get(id);
     }
 
+    @Override
+    public Version resolve(Version version) throws VersionNotFoundException {
+        Map<String, Version> versions = this.versions;
+        if (versions == null)
+            return version.resolve(this);
+        return resolveCached(version, this, versions);
+    }
+
+    /**
+     * Resolve the version, reusing the previous result if neither the version nor any version it inherits from has changed.
+     * Refreshes keep the parsed instance of an unchanged version json, so the chain is compared by identity.
+     *
+     * @param versionsById the versions {@code provider} provides
+     */
+    private Version resolveCached(Version version, VersionProvider provider, Map<String, Version> versionsById) throws VersionNotFoundException {
+        if (version.isResolved())
+            return version;
+
+        List<Version> chain = getInheritanceChain(version, versionsById);
+        if (chain == null)
+            return version.resolve(provider);
+
+        ResolvedVersion cached = resolvedVersions.get(version.getId());
+        if (cached != null && cached.isResolvedFrom(chain))
+            return cached.resolved;
+
+        Version resolved = version.resolve(provider);
+        resolvedVersions.put(version.getId(), new ResolvedVersion(chain, resolved));
+        return resolved;
+    }
+
+    /**
+     * @return the version followed by the versions it inherits from, null if the version is not the one in
+     * {@code versionsById}, or if the chain is broken or circular.
+     */
+    private static List<Version> getInheritanceChain(Version version, Map<String, Version> versionsById) {
+        List<Version> chain = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (Version current = version; current != null; current = versionsById.get(current.getInheritsFrom())) {
+            if (versionsById.get(current.getId()) != current || !visited.add(current.getId()))
+                return null;
+            chain.add(current);
+            if (current.getInheritsFrom() == null)
+                return chain;
+        }
+        return null;
+    }
+
     @Override
     public int getVersionCount() {
         return versions.size();
@@ -122,7 +189,7 @@ public class DefaultGameRepository implements GameRepository {
 
     @Override
     public File getVersionJar(Version version) {
-        Version v = version.resolve(this);
+        Version v = resolve(version);
         String id = Optional.ofNullable(v.getJar()).orElse(v.getId());
         return new File(getVersionRoot(id), id + ".jar");
     }
@@ -149,6 +216,26 @@ public class DefaultGameRepository implements GameRepository {
         return JsonUtils.fromNonNullJson(FileUtils.readText(file), Version.class);
     }
 
+    /**
+     * Reads the version json, reusing the version parsed before if the size and modification time of the file are unchanged.
+     */
+    private Version readVersionJsonCached(File file) throws IOException, JsonParseException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        ParsedVersion parsed = parsedVersions.get(path);
+        if (parsed != null && parsed.size == attributes.size() && parsed.lastModified == lastModified)
+            return parsed.version;
+
+        Version version = readVersionJson(file);
+        if (!PersistentIndex.isRacy(lastModified))
+            parsedVersions.put(path, new ParsedVersion(attributes.size(), lastModified, version));
+        else
+            parsedVersions.remove(path);
+        return version;
+    }
+
     @Override
     public boolean renameVersion(String from, String to) {
         if (EventBus.EVENT_BUS.fireEvent(new RenameVersionEvent(this, from, to)) == Event.Result.DENY)
@@ -233,6 +320,7 @@ public class DefaultGameRepository implements GameRepository {
         }
 
         SimpleVersionProvider provider = new SimpleVersionProvider();
+        Set<Path> jsons = ConcurrentHashMap.newKeySet();
 
         File[] files = new File(getBaseDirectory(), "versions").listFiles();
         if (files != null)
@@ -262,9 +350,11 @@ public class DefaultGameRepository implements GameRepository {
                     }
                 }
 
+                jsons.add(json.toPath().toAbsolutePath().normalize());
+
                 Version version;
                 try {
-                    version = readVersionJson(json);
+                    version = readVersionJsonCached(json);
                 } catch (Exception e) {
                     LOG.log(Level.WARNING, "Malformed version json " + id, e);
                     // JsonSyntaxException or IOException or NullPointerException(!!)
@@ -292,9 +382,12 @@ public class DefaultGameRepository implements GameRepository {
                 return Stream.of(version);
             }).forEachOrdered(provider::addVersion);
 
+        // Forget versions removed since last refresh.
+        parsedVersions.keySet().retainAll(jsons);
+
         for (Version version : provider.getVersionMap().values()) {
             try {
-                Version resolved = version.resolve(provider);
+                Version resolved = resolveCached(version, provider, provider.getVersionMap());
 
                 if (resolved.appliesToCurrentEnvironment() &&
                         EventBus.EVENT_BUS.fireEvent(new LoadedOneVersionEvent(this, resolved)) != Event.Result.DENY)
@@ -304,6 +397,7 @@ public class DefaultGameRepository implements GameRepository {
             }
         }
 
+        resolvedVersions.keySet().retainAll(provider.getVersionMap().keySet());
         this.versions = versions;
     }
 
@@ -370,32 +464,67 @@ public class DefaultGameRepository implements GameRepository {
         return new File(getAssetDirectory(version, assetId), "log_configs/" + loggingInfo.getFile().getId());
     }
 
+    /**
+     * Reconstructs the virtual asset directory of legacy asset indexes, linking asset objects into it if possible.
+     * Once all objects are in place, the digest of the asset index is recorded in assets/virtual/&lt;id&gt;.reconstructed,
+     * so that later launches skip reconstruction until the asset index changes.
+     */
     protected File reconstructAssets(String version, String assetId) throws IOException, JsonParseException {
         File assetsDir = getAssetDirectory(version, assetId);
         File indexFile = getIndexFile(version, assetId);
         File virtualRoot = new File(new File(assetsDir, "virtual"), assetId);
+        File manifest = new File(new File(assetsDir, "virtual"), assetId + ".reconstructed");
 
         if (!indexFile.isFile())
             return assetsDir;
 
-        String assetIndexContent = FileUtils.readText(indexFile);
-        AssetIndex index = JsonUtils.GSON.fromJson(assetIndexContent, AssetIndex.class);
+        byte[] assetIndexContent = Files.readAllBytes(indexFile.toPath());
+        String indexHash = Hex.encodeHex(DigestUtils.digest("SHA-1", assetIndexContent));
+        if (manifest.isFile() && virtualRoot.isDirectory() && indexHash.equals(FileUtils.readText(manifest).trim()))
+            return virtualRoot;
+
+        AssetIndex index = JsonUtils.GSON.fromJson(new String(assetIndexContent, UTF_8), AssetIndex.class);
 
         if (index == null)
             return assetsDir;
 
         if (index.isVirtual()) {
-            int cnt = 0;
-            int tot = index.getObjects().entrySet().size();
-            for (Map.Entry<String, AssetObject> entry : index.getObjects().entrySet()) {
-                File target = new File(virtualRoot, entry.getKey());
-                File original = getAssetObject(version, assetsDir, entry.getValue());
-                if (original.exists()) {
-                    cnt++;
-                    if (!target.isFile())
-                        FileUtils.copyFile(original, target);
-                }
+            boolean linking = CacheRepository.getInstance().isLinking();
+            // Linking and copying block on the file system, spread them over the io threads.
+            List<CompletableFuture<Boolean>> objects = index.getObjects().entrySet().stream()
+                    .map(entry -> CompletableFuture.supplyAsync(() -> {
+                        Path target = virtualRoot.toPath().resolve(entry.getKey());
+                        Path original = getAssetObject(version, assetsDir, entry.getValue()).toPath();
+                        if (!Files.exists(original))
+                            return false;
+                        if (!Files.isRegularFile(target)) {
+                            try {
+                                linkOrCopy(original, target, linking);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                        return true;
+                    }, Schedulers.io()))
+                    .collect(Collectors.toList());
+
+            long cnt = 0;
+            try {
+                for (CompletableFuture<Boolean> object : objects)
+                    if (object.join())
+                        cnt++;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException)
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                throw e;
             }
+            int tot = index.getObjects().size();
+
+            // Objects still missing may be downloaded later, reconstruct again next time.
+            if (cnt == tot)
+                FileUtils.writeText(manifest, indexHash);
+            else
+                Files.deleteIfExists(manifest.toPath());
 
             // If the scale new format existent file is lower then 0.1, use the old format.
             if (cnt * 10 < tot)
@@ -407,6 +536,19 @@ public class DefaultGameRepository implements GameRepository {
         return assetsDir;
     }
 
+    private static void linkOrCopy(Path source, Path target, boolean linking) throws IOException {
+        if (linking) {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.createLink(target, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                LOG.log(Level.FINER, "Unable to link " + source + " to " + target + ", copying it instead", e);
+            }
+        }
+        FileUtils.copyFile(source, target);
+    }
+
     public Task<Version> save(Version version) {
         if (version.isResolvedPreservingPatches()) {
             return new VersionJsonSaveTask(this, MaintainTask.maintainPreservingPatches(this, version));
@@ -427,6 +569,37 @@ public class DefaultGameRepository implements GameRepository {
         return getModpackConfiguration(version).exists();
     }
 
+    private static final class ParsedVersion {
+        private final long size;
+        private final long lastModified;
+        private final Version version;
+
+        ParsedVersion(long size, long lastModified, Version version) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.version = version;
+        }
+    }
+
+    private static final class ResolvedVersion {
+        private final List<Version> chain;
+        private final Version resolved;
+
+        ResolvedVersion(List<Version> chain, Version resolved) {
+            this.chain = chain;
+            this.resolved = resolved;
+        }
+
+        boolean isResolvedFrom(List<Version> chain) {
+            if (this.chain.size() != chain.size())
+                return false;
+            for (int i = 0; i < chain.size(); i++)
+                if (this.chain.get(i) != chain.get(i))
+                    return false;
+            return true;
+        }
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
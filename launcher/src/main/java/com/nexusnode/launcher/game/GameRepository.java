@@ -53,7 +53,19 @@ public interface GameRepository extends VersionProvider {
     Version getVersion(String id) throws VersionNotFoundException;
 
     default Version getResolvedVersion(String id) throws VersionNotFoundException {
-        return getVersion(id).resolve(this);
+        return resolve(getVersion(id));
+    }
+
+    /**
+     * Resolve the version against this repository, merging the versions it inherits from.
+     * Implementations may reuse the result until the version or any version it inherits from changes.
+     *
+     * @param version the version to resolve
+     * @return the resolved version
+     * @throws VersionNotFoundException if a version in the inheritance chain does not exist.
+     */
+    default Version resolve(Version version) throws VersionNotFoundException {
+        return version.resolve(this);
     }
 
     default Version getResolvedPreservingPatchesVersion(String id) throws VersionNotFoundException {
@@ -137,7 +149,7 @@ public interface GameRepository extends VersionProvider {
      * @return the minecraft jar
      */
     default File getVersionJar(String version) throws VersionNotFoundException {
-        return getVersionJar(getVersion(version).resolve(this));
+        return getVersionJar(resolve(getVersion(version)));
     }
 
     /**
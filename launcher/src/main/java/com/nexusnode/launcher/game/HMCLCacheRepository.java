@@ -20,8 +20,17 @@ package com.nexusnode.launcher.game;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import com.nexusnode.launcher.download.DefaultCacheRepository;
+import com.nexusnode.launcher.setting.Profile;
+import com.nexusnode.launcher.setting.Profiles;
+import com.nexusnode.launcher.task.Schedulers;
 
+import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import static com.nexusnode.launcher.util.Logging.LOG;
 
 public class HMCLCacheRepository extends DefaultCacheRepository {
 
@@ -43,5 +52,29 @@ public class HMCLCacheRepository extends DefaultCacheRepository {
         this.directory.set(directory);
     }
 
+    /**
+     * Shrinks the cache to its size limit in background, keeping files used by versions of profiles
+     * whose versions have been loaded.
+     * Profiles never loaded in this session are not protected, since their versions are unknown,
+     * so files only their versions use may be evicted and are downloaded again when launching them.
+     * Natives directories are never protected: they are extracted again from the cached libraries.
+     * Should be called from the JavaFX application thread.
+     */
+    public void evictAsync() {
+        if (getMaxSize() <= 0) return;
+
+        List<HMCLGameRepository> repositories = Profiles.getProfiles().stream()
+                .map(Profile::getRepository)
+                .filter(HMCLGameRepository::isLoaded)
+                .collect(Collectors.toList());
+        Schedulers.io().execute(() -> {
+            try {
+                evict(repositories);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to evict cached files", e);
+            }
+        });
+    }
+
     public static final HMCLCacheRepository REPOSITORY = new HMCLCacheRepository();
 }
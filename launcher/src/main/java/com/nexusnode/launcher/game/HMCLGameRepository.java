@@ -207,7 +207,7 @@ public class HMCLGameRepository extends DefaultGameRepository {
         if (id == null || !isLoaded())
             return newImage("/assets/img/grass.png");
 
-        Version version = getVersion(id).resolve(this);
+        Version version = resolve(getVersion(id));
         File iconFile = getVersionIconFile(id);
         if (iconFile.exists())
             return new Image("file:" + iconFile.getAbsolutePath());
@@ -0,0 +1,42 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.game;
+
+/**
+ * Determines the garbage collector and heap sizing the game runs with.
+ *
+ * @author bluebird6900
+ */
+public enum JvmTuningProfile {
+    /**
+     * G1 with short pauses, suits most games.
+     */
+    BALANCED,
+    /**
+     * ZGC if the Java supports it, shortest pauses at the cost of memory and CPU.
+     */
+    LOW_LATENCY,
+    /**
+     * Parallel GC, most work done per CPU time but with longer pauses.
+     */
+    THROUGHPUT,
+    /**
+     * Small heap returned to the system when not used, for machines with little memory.
+     */
+    LOW_MEMORY
+}
@@ -37,7 +37,9 @@ public class LaunchOptions implements Serializable {
     private String javaArgs;
     private Integer minMemory;
     private Integer maxMemory;
+    private boolean maxMemoryChanged;
     private Integer metaspace;
+    private JvmTuningProfile tuningProfile;
     private Integer width;
     private Integer height;
     private boolean fullscreen;
@@ -48,6 +50,7 @@ public class LaunchOptions implements Serializable {
     private String proxyUser;
     private String proxyPass;
     private boolean noGeneratedJVMArgs;
+    private boolean classDataSharing;
     private String preLaunchCommand;
 
     /**
@@ -115,6 +118,13 @@ public class LaunchOptions implements Serializable {
         return maxMemory;
     }
 
+    /**
+     * True if the user changed the maximum memory, otherwise it is a default the tuning profile may override.
+     */
+    public boolean isMaxMemoryChanged() {
+        return maxMemoryChanged;
+    }
+
     /**
      * The maximum metaspace memory that the JVM can allocate.
      * For Java 7 -XX:PermSize and Java 8 -XX:MetaspaceSize
@@ -124,6 +134,13 @@ public class LaunchOptions implements Serializable {
         return metaspace;
     }
 
+    /**
+     * Determines the garbage collector and the default heap sizes, null for {@link JvmTuningProfile#BALANCED}.
+     */
+    public JvmTuningProfile getTuningProfile() {
+        return tuningProfile;
+    }
+
     /**
      * The initial game window width
      */
@@ -194,6 +211,14 @@ public class LaunchOptions implements Serializable {
         return noGeneratedJVMArgs;
     }
 
+    /**
+     * Archive the classes loaded by the game on its first launch with this Java, and map them from the archive afterwards.
+     * Ignored if the Java does not support dynamic class data sharing archives.
+     */
+    public boolean isClassDataSharing() {
+        return classDataSharing;
+    }
+
     /**
      * Called command line before launching the game.
      */
@@ -254,11 +279,21 @@ public class LaunchOptions implements Serializable {
             return this;
         }
 
+        public Builder setMaxMemoryChanged(boolean maxMemoryChanged) {
+            options.maxMemoryChanged = maxMemoryChanged;
+            return this;
+        }
+
         public Builder setMetaspace(Integer metaspace) {
             options.metaspace = metaspace;
             return this;
         }
 
+        public Builder setTuningProfile(JvmTuningProfile tuningProfile) {
+            options.tuningProfile = tuningProfile;
+            return this;
+        }
+
         public Builder setWidth(Integer width) {
             options.width = width;
             return this;
@@ -309,6 +344,11 @@ public class LaunchOptions implements Serializable {
             return this;
         }
 
+        public Builder setClassDataSharing(boolean classDataSharing) {
+            options.classDataSharing = classDataSharing;
+            return this;
+        }
+
         public Builder setPrecalledCommand(String precalledCommand) {
             options.preLaunchCommand = precalledCommand;
             return this;
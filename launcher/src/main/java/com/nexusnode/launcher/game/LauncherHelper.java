@@ -17,6 +17,7 @@
  */
 package com.nexusnode.launcher.game;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.stage.Stage;
 import com.nexusnode.launcher.Launcher;
@@ -26,6 +27,7 @@ import com.nexusnode.launcher.download.DefaultDependencyManager;
 import com.nexusnode.launcher.download.MaintainTask;
 import com.nexusnode.launcher.download.game.GameAssetIndexDownloadTask;
 import com.nexusnode.launcher.download.game.LibraryDownloadException;
+import com.nexusnode.launcher.launch.DefaultLauncher;
 import com.nexusnode.launcher.launch.NotDecompressingNativesException;
 import com.nexusnode.launcher.launch.PermissionException;
 import com.nexusnode.launcher.launch.ProcessCreationException;
@@ -57,8 +59,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.nexusnode.launcher.setting.ConfigHolder.config;
 import static com.nexusnode.launcher.util.Lang.mapOf;
@@ -88,6 +93,33 @@ public final class LauncherHelper {
 
     private final TaskExecutorDialogPane launchingStepsPane = new TaskExecutorDialogPane(it -> {});
     private CountDownLatch launchingLatch;
+    private final Map<String, Long> stageStarts = new ConcurrentHashMap<>();
+    private final Map<String, Long> stageTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @return how long each finished launch stage took in milliseconds, in the order the stages finished.
+     */
+    public Map<String, Long> getStageTimings() {
+        synchronized (stageTimings) {
+            return new LinkedHashMap<>(stageTimings);
+        }
+    }
+
+    private void startStage(String stage) {
+        stageStarts.put(stage, System.nanoTime());
+    }
+
+    private void stopStage(String stage) {
+        Long start = stageStarts.remove(stage);
+        if (start != null)
+            stageTimings.put(stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void logStageTimings() {
+        StringBuilder builder = new StringBuilder("Launch stage timings:");
+        getStageTimings().forEach((stage, millis) -> builder.append(' ').append(stage).append('=').append(millis).append("ms"));
+        LOG.info(builder.toString());
+    }
 
     public void setTestMode() {
         launcherVisibility = LauncherVisibility.KEEP;
@@ -123,30 +155,47 @@ public final class LauncherHelper {
         Version version = MaintainTask.maintain(repository, repository.getResolvedVersion(selectedVersion));
         Optional<String> gameVersion = GameVersion.minecraftVersion(repository.getVersionJar(version));
 
-        TaskExecutor executor = Task.allOf(
+        Version launchVersion = version.getPatches().isEmpty() ? repository.getResolvedVersion(selectedVersion) : version;
+
+        // Completion checking with natives extraction and logging in are independent, run them concurrently.
+        Task<?> dependencies = Task.allOf(
                 Task.composeAsync(() -> {
+                    startStage("dependencies");
                     if (setting.isNotCheckGame())
                         return null;
                     else
                         return dependencyManager.checkGameCompletionAsync(version, repository.unmarkVersionLaunchedAbnormally(selectedVersion));
-                }), Task.composeAsync(() -> {
+                }).thenRunAsync(() -> {
+                    stopStage("dependencies");
+                    startStage("natives");
+                    DefaultLauncher.decompressNatives(repository, launchVersion, repository.getNativeDirectory(selectedVersion));
+                    stopStage("natives");
+                }),
+                Task.composeAsync(() -> {
                     return null; //TODO-bluebird
-                })).withStage("launch.state.dependencies")
-                .thenComposeAsync(Task.supplyAsync(() -> {
-                    try {
-                        return account.logIn();
-                    } catch (CredentialExpiredException e) {
-                        LOG.info("Credential has expired: " + e);
-                        return DialogController.logIn(account);
-                    } catch (AuthenticationException e) {
-                        LOG.warning("Authentication failed, try playing offline: " + e);
-                        return account.playOffline().orElseThrow(() -> e);
-                    }
-                }).withStage("launch.state.logging_in"))
-                .thenComposeAsync(authInfo -> Task.supplyAsync(() -> {
+                })).withStage("launch.state.dependencies");
+
+        Task<AuthInfo> logIn = Task.supplyAsync(() -> {
+            startStage("logging_in");
+            try {
+                return account.logIn();
+            } catch (CredentialExpiredException e) {
+                LOG.info("Credential has expired: " + e);
+                return DialogController.logIn(account);
+            } catch (AuthenticationException e) {
+                LOG.warning("Authentication failed, try playing offline: " + e);
+                return account.playOffline().orElseThrow(() -> e);
+            } finally {
+                stopStage("logging_in");
+            }
+        }).withStage("launch.state.logging_in");
+
+        TaskExecutor executor = Task.allOf(dependencies, logIn)
+                .thenComposeAsync(() -> Task.supplyAsync(() -> {
+                    AuthInfo authInfo = logIn.getResult();
                     return new HMCLGameLauncher(
                             repository,
-                            version.getPatches().isEmpty() ? repository.getResolvedVersion(selectedVersion) : version,
+                            launchVersion,
                             authInfo,
                             setting.toLaunchOptions(profile.getGameDir(), !setting.isNotCheckJVM()),
                             launcherVisibility == LauncherVisibility.CLOSE
@@ -155,7 +204,15 @@ public final class LauncherHelper {
                     );
                 }).thenComposeAsync(launcher -> { // launcher is prev task's result
                     if (scriptFile == null) {
-                        return Task.supplyAsync(launcher::launch);
+                        return Task.supplyAsync(() -> {
+                            startStage("starting_process");
+                            try {
+                                return launcher.launch();
+                            } finally {
+                                stopStage("starting_process");
+                                logStageTimings();
+                            }
+                        });
                     } else {
                         return Task.supplyAsync(() -> {
                             launcher.makeLaunchScript(scriptFile);
@@ -197,7 +254,9 @@ public final class LauncherHelper {
                     // because onStop will be invoked if tasks fail when the executor service shut down.
                     if (!Controllers.isStopped()) {
                         launchingStepsPane.fireEvent(new DialogCloseEvent());
-                        if (!success) {
+                        if (success) {
+                            HMCLCacheRepository.REPOSITORY.evictAsync();
+                        } else {
                             Exception ex = executor.getException();
                             if (ex != null) {
                                 String message;
@@ -422,15 +481,20 @@ public final class LauncherHelper {
      */
     class HMCLProcessListener implements ProcessListener {
 
+        /**
+         * Minimum nanoseconds between two deliveries of game logs to the log window.
+         */
+        private static final long LOG_DELIVERY_INTERVAL = 50_000_000L;
+
         private final HMCLGameRepository repository;
         private final String version;
         private final Map<String, String> forbiddenTokens;
         private ManagedProcess process;
-        private boolean lwjgl;
+        private final AtomicBoolean lwjgl = new AtomicBoolean(false);
         private LogWindow logWindow;
+        private AnimationTimer logDelivery;
         private final boolean detectWindow;
-        private final LinkedList<Pair<String, Log4jLevel>> logs;
-        private final CountDownLatch latch = new CountDownLatch(1);
+        private final RingBuffer<Pair<String, Log4jLevel>> logs;
 
         public HMCLProcessListener(HMCLGameRepository repository, String version, AuthInfo authInfo, boolean detectWindow) {
             this.repository = repository;
@@ -446,7 +510,7 @@ public final class LauncherHelper {
                         pair(authInfo.getUsername(), "<player>")
                 );
 
-            logs = new LinkedList<>();
+            logs = new RingBuffer<>(Math.max(1, config().getLogLines()));
         }
 
         @Override
@@ -463,10 +527,32 @@ public final class LauncherHelper {
                 Platform.runLater(() -> {
                     logWindow = new LogWindow();
                     logWindow.show();
-                    latch.countDown();
+                    logDelivery = new AnimationTimer() {
+                        private long lastDelivery = 0;
+
+                        @Override
+                        public void handle(long now) {
+                            if (now - lastDelivery >= LOG_DELIVERY_INTERVAL) {
+                                lastDelivery = now;
+                                deliverLogs();
+                            }
+                        }
+                    };
+                    logDelivery.start();
                 });
         }
 
+        /**
+         * Moves the lines logged since last delivery to the log window, in one batch per frame at most.
+         * Lines overwritten in the buffer before being delivered are never shown.
+         */
+        private void deliverLogs() {
+            List<Pair<String, Log4jLevel>> batch = new ArrayList<>();
+            logs.drainTo(batch, logs.capacity());
+            if (!batch.isEmpty())
+                logWindow.logLines(batch);
+        }
+
         private void finishLaunch() {
             switch (launcherVisibility) {
                 case HIDE_AND_REOPEN:
@@ -503,7 +589,7 @@ public final class LauncherHelper {
         }
 
         @Override
-        public synchronized void onLog(String log, Log4jLevel level) {
+        public void onLog(String log, Log4jLevel level) {
             String newLog = log;
             for (Map.Entry<String, String> entry : forbiddenTokens.entrySet())
                 newLog = newLog.replace(entry.getKey(), entry.getValue());
@@ -515,22 +601,9 @@ public final class LauncherHelper {
                 System.out.println(filteredLog);
 
             logs.add(pair(filteredLog, level));
-            if (logs.size() > config().getLogLines())
-                logs.removeFirst();
-
-            if (showLogs) {
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
-
-                Platform.runLater(() -> logWindow.logLine(filteredLog, level));
-            }
 
-            if (!lwjgl && (filteredLog.toLowerCase().contains("lwjgl version") || !detectWindow)) {
-                lwjgl = true;
+            if (!lwjgl.get() && (!detectWindow || filteredLog.toLowerCase().contains("lwjgl version"))
+                    && lwjgl.compareAndSet(false, true)) {
                 finishLaunch();
             }
         }
@@ -543,7 +616,15 @@ public final class LauncherHelper {
                 return;
 
             // Game crashed before opening the game window.
-            if (!lwjgl) finishLaunch();
+            if (lwjgl.compareAndSet(false, true)) finishLaunch();
+
+            if (showLogs)
+                Platform.runLater(() -> {
+                    if (logDelivery != null) {
+                        logDelivery.stop();
+                        deliverLogs();
+                    }
+                });
 
             if (exitType != ExitType.NORMAL) {
                 repository.markVersionLaunchedAbnormally(version);
@@ -561,8 +642,7 @@ public final class LauncherHelper {
                         }
 
                         logWindow.logLine("Command: " + new CommandBuilder().addAll(process.getCommands()).toString(), Log4jLevel.INFO);
-                        for (Map.Entry<String, Log4jLevel> entry : logs)
-                            logWindow.logLine(entry.getKey(), entry.getValue());
+                        logWindow.logLines(logs.snapshot());
                     }
 
                     logWindow.showGameCrashReport();
@@ -26,6 +26,7 @@ import com.nexusnode.launcher.auth.Account;
 import com.nexusnode.launcher.auth.ServerResponseMalformedException;
 import com.nexusnode.launcher.auth.yggdrasil.*;
 import com.nexusnode.launcher.task.FileDownloadTask;
+import com.nexusnode.launcher.util.LruCache;
 import com.nexusnode.launcher.util.ResourceNotFoundError;
 import com.nexusnode.launcher.util.StringUtils;
 import com.nexusnode.launcher.util.javafx.BindingMapping;
@@ -41,6 +42,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -64,10 +66,19 @@ public final class TexturesLoader {
 
     // ==== Texture Loading ====
     public static class LoadedTexture {
+        private final String id;
         private final BufferedImage image;
         private final Map<String, String> metadata;
 
         public LoadedTexture(BufferedImage image, Map<String, String> metadata) {
+            this(null, image, metadata);
+        }
+
+        /**
+         * @param id identifies the image, so that avatars rendered from it can be cached. Null if not cacheable.
+         */
+        private LoadedTexture(String id, BufferedImage image, Map<String, String> metadata) {
+            this.id = id;
             this.image = requireNonNull(image);
             this.metadata = requireNonNull(metadata);
         }
@@ -84,6 +95,12 @@ public final class TexturesLoader {
     private static final ThreadPoolExecutor POOL = threadPool("TexturesDownload", true, 2, 10, TimeUnit.SECONDS);
     private static final Path TEXTURES_DIR = Metadata.MINECRAFT_DIRECTORY.resolve("assets").resolve("skins");
 
+    /**
+     * Decoded textures by texture file, bounded by their pixel bytes.
+     */
+    private static final LruCache<String, BufferedImage> TEXTURES = new LruCache<>(32 * 1024 * 1024,
+            image -> (long) image.getWidth() * image.getHeight() * 4);
+
     private static Path getTexturePath(Texture texture) {
         String url = texture.getUrl();
         int slash = url.lastIndexOf('/');
@@ -102,6 +119,16 @@ public final class TexturesLoader {
         }
 
         Path file = getTexturePath(texture);
+        BufferedImage img = TEXTURES.get(file.toString(), key -> readTexture(texture, file));
+
+        Map<String, String> metadata = texture.getMetadata();
+        if (metadata == null) {
+            metadata = emptyMap();
+        }
+        return new LoadedTexture(file.toString(), img, metadata);
+    }
+
+    private static BufferedImage readTexture(Texture texture, Path file) throws IOException {
         if (!Files.isRegularFile(file)) {
             // download it
             try {
@@ -123,12 +150,7 @@ public final class TexturesLoader {
         }
         if (img == null)
             throw new IOException("Texture is malformed");
-
-        Map<String, String> metadata = texture.getMetadata();
-        if (metadata == null) {
-            metadata = emptyMap();
-        }
-        return new LoadedTexture(img, metadata);
+        return img;
     }
     // ====
 
@@ -141,7 +163,7 @@ public final class TexturesLoader {
 
     private static void loadDefaultSkin(String path, TextureModel model) {
         try (InputStream in = ResourceNotFoundError.getResourceAsStream(path)) {
-            DEFAULT_SKINS.put(model, new LoadedTexture(ImageIO.read(in), singletonMap("model", model.modelName)));
+            DEFAULT_SKINS.put(model, new LoadedTexture("default:" + model.modelName, ImageIO.read(in), singletonMap("model", model.modelName)));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -184,6 +206,37 @@ public final class TexturesLoader {
     // ====
 
     // ==== Avatar ====
+    /**
+     * Rendered avatars by skin and size, bounded by their pixel bytes.
+     */
+    private static final LruCache<AvatarKey, Image> AVATARS = new LruCache<>(8 * 1024 * 1024,
+            image -> (long) image.getWidth() * (long) image.getHeight() * 4);
+
+    private static final class AvatarKey {
+        private final String skin;
+        private final int size;
+
+        AvatarKey(String skin, int size) {
+            this.skin = skin;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof AvatarKey))
+                return false;
+            AvatarKey other = (AvatarKey) obj;
+            return size == other.size && skin.equals(other.skin);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(skin, size);
+        }
+    }
+
     public static BufferedImage toAvatar(BufferedImage skin, int size) {
         BufferedImage avatar = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = avatar.createGraphics();
@@ -204,8 +257,7 @@ public final class TexturesLoader {
 
     public static ObjectBinding<Image> fxAvatarBinding(YggdrasilService service, UUID uuid, int size) {
         return BindingMapping.of(skinBinding(service, uuid))
-                .map(it -> toAvatar(it.image, size))
-                .map(img -> SwingFXUtils.toFXImage(img, null));
+                .map(it -> toFXAvatar(it, size));
     }
 
     public static ObjectBinding<Image> fxAvatarBinding(Account account, int size) {
@@ -213,8 +265,14 @@ public final class TexturesLoader {
             return fxAvatarBinding(((YggdrasilAccount) account).getYggdrasilService(), account.getUUID(), size);
         } else {
             return Bindings.createObjectBinding(
-                    () -> SwingFXUtils.toFXImage(toAvatar(getDefaultSkin(TextureModel.detectUUID(account.getUUID())).image, size), null));
+                    () -> toFXAvatar(getDefaultSkin(TextureModel.detectUUID(account.getUUID())), size));
         }
     }
+
+    private static Image toFXAvatar(LoadedTexture skin, int size) {
+        if (skin.id == null)
+            return SwingFXUtils.toFXImage(toAvatar(skin.image, size), null);
+        return AVATARS.get(new AvatarKey(skin.id, size), key -> SwingFXUtils.toFXImage(toAvatar(skin.image, size), null));
+    }
     // ====
 }
@@ -24,12 +24,14 @@ import com.nexusnode.launcher.game.GameRepository;
 import com.nexusnode.launcher.game.LaunchOptions;
 import com.nexusnode.launcher.game.Library;
 import com.nexusnode.launcher.game.Version;
+import com.nexusnode.launcher.util.CacheRepository;
+import com.nexusnode.launcher.util.DigestUtils;
+import com.nexusnode.launcher.util.Hex;
 import com.nexusnode.launcher.util.Lang;
 import com.nexusnode.launcher.util.Log4jLevel;
 import com.nexusnode.launcher.util.StringUtils;
 import com.nexusnode.launcher.util.gson.UUIDTypeAdapter;
 import com.nexusnode.launcher.util.io.FileUtils;
-import com.nexusnode.launcher.util.io.Unzipper;
 import com.nexusnode.launcher.util.platform.CommandBuilder;
 import com.nexusnode.launcher.util.platform.JavaVersion;
 import com.nexusnode.launcher.util.platform.ManagedProcess;
@@ -41,7 +43,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -49,8 +50,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.nexusnode.launcher.util.Lang.mapOf;
+import static com.nexusnode.launcher.util.Logging.LOG;
 import static com.nexusnode.launcher.util.Pair.pair;
 
 /**
@@ -74,6 +77,11 @@ public class DefaultLauncher extends Launcher {
     private CommandBuilder generateCommandLine(File nativeFolder) throws IOException {
         CommandBuilder res = new CommandBuilder();
 
+        File jar = repository.getVersionJar(version);
+        if (!jar.exists() || !jar.isFile())
+            throw new IOException("Minecraft jar does not exist");
+        LaunchPlan plan = LaunchPlan.of(repository, version);
+
         // Executable
         if (StringUtils.isNotBlank(options.getWrapper()))
             res.add(options.getWrapper());
@@ -97,15 +105,10 @@ public class DefaultLauncher extends Launcher {
             if (OperatingSystem.CURRENT_OS != OperatingSystem.WINDOWS)
                 res.add("-Duser.home=" + options.getGameDir().getParent());
 
-            // Force using G1GC with its settings
-            if (options.getJava().getParsedVersion() >= JavaVersion.JAVA_7) {
-                res.add("-XX:+UnlockExperimentalVMOptions");
-                res.add("-XX:+UseG1GC");
-                res.add("-XX:G1NewSizePercent=20");
-                res.add("-XX:G1ReservePercent=20");
-                res.add("-XX:MaxGCPauseMillis=50");
-                res.add("-XX:G1HeapRegionSize=16M");
-            }
+            JvmTuning tuning = new JvmTuning(options.getTuningProfile(), options.getJava(), OperatingSystem.TOTAL_MEMORY, Runtime.getRuntime().availableProcessors());
+            int maxHeap = tuning.getMaxHeap(options.getMaxMemory(), options.isMaxMemoryChanged());
+            Integer initialHeap = tuning.getInitialHeap(options.getMinMemory(), maxHeap);
+            res.addAll(tuning.getGarbageCollectorArguments(maxHeap));
 
             if (options.getMetaspace() != null && options.getMetaspace() > 0)
                 if (options.getJava().getParsedVersion() < JavaVersion.JAVA_8)
@@ -113,9 +116,7 @@ public class DefaultLauncher extends Launcher {
                 else
                     res.add("-XX:MetaspaceSize=" + options.getMetaspace() + "m");
 
-            res.add("-XX:-UseAdaptiveSizePolicy");
             res.add("-XX:-OmitStackTraceInFastThrow");
-            res.add("-Xmn128m");
 
             // As 32-bit JVM allocate 320KB for stack by default rather than 64-bit version allocating 1MB,
             // causing Minecraft 1.13 crashed accounting for java.lang.StackOverflowError.
@@ -123,50 +124,43 @@ public class DefaultLauncher extends Launcher {
                 res.add("-Xss1M");
             }
 
-            if (options.getMaxMemory() != null && options.getMaxMemory() > 0)
-                res.add("-Xmx" + options.getMaxMemory() + "m");
+            res.add("-Xmx" + maxHeap + "m");
 
-            if (options.getMinMemory() != null && options.getMinMemory() > 0)
-                res.add("-Xms" + options.getMinMemory() + "m");
+            if (initialHeap != null)
+                res.add("-Xms" + initialHeap + "m");
 
             res.add("-Dfml.ignoreInvalidMinecraftCertificates=true");
             res.add("-Dfml.ignorePatchDiscrepancies=true");
-        }
-
-        LinkedList<String> classpath = new LinkedList<>();
-        for (Library library : version.getLibraries())
-            if (library.appliesToCurrentEnvironment() && !library.isNative()) {
-                File f = repository.getLibraryFile(version, library);
-                if (f.exists() && f.isFile())
-                    classpath.add(f.getAbsolutePath());
-            }
 
-        File jar = repository.getVersionJar(version);
-        if (!jar.exists() || !jar.isFile())
-            throw new IOException("Minecraft jar does not exist");
-        classpath.add(jar.getAbsolutePath());
+            if (options.isClassDataSharing())
+                appendClassDataSharingArgs(res, plan);
+        }
 
         // Provided Minecraft arguments
         File gameAssets = repository.getActualAssetDirectory(version.getId(), version.getAssetIndex().getId());
         Map<String, String> configuration = getConfigurations();
-        configuration.put("${classpath}", String.join(OperatingSystem.PATH_SEPARATOR, classpath));
+        configuration.put("${classpath}", plan.getClasspath());
         configuration.put("${natives_directory}", nativeFolder.getAbsolutePath());
         configuration.put("${game_assets}", gameAssets.getAbsolutePath());
         configuration.put("${assets_root}", gameAssets.getAbsolutePath());
 
-        res.addAll(Arguments.parseArguments(version.getArguments().map(Arguments::getJvm).orElseGet(this::getDefaultJVMArguments), configuration));
+        Map<String, Boolean> features = getFeatures();
+        LaunchPlan.ParsedArguments arguments = plan.getArguments(configuration, features, cacheable -> {
+            List<String> jvm = Arguments.parseArguments(version.getArguments().map(Arguments::getJvm).orElseGet(this::getDefaultJVMArguments), cacheable);
+            List<String> game = new LinkedList<>(Arguments.parseStringArguments(version.getMinecraftArguments().map(StringUtils::tokenize).orElseGet(LinkedList::new), cacheable));
+            version.getArguments().map(Arguments::getGame).ifPresent(args -> game.addAll(Arguments.parseArguments(args, cacheable, features)));
+            if (version.getMinecraftArguments().isPresent())
+                game.addAll(Arguments.parseArguments(this.getDefaultGameArguments(), cacheable, features));
+            return new LaunchPlan.ParsedArguments(jvm, game);
+        });
+
+        res.addAll(arguments.getJvm(configuration));
         if (authInfo.getArguments() != null && authInfo.getArguments().getJvm() != null && !authInfo.getArguments().getJvm().isEmpty())
             res.addAll(Arguments.parseArguments(authInfo.getArguments().getJvm(), configuration));
 
         res.add(version.getMainClass());
 
-        res.addAll(Arguments.parseStringArguments(version.getMinecraftArguments().map(StringUtils::tokenize).orElseGet(LinkedList::new), configuration));
-
-        Map<String, Boolean> features = getFeatures();
-        version.getArguments().map(Arguments::getGame).ifPresent(arguments -> res.addAll(Arguments.parseArguments(arguments, configuration, features)));
-        if (version.getMinecraftArguments().isPresent()) {
-            res.addAll(Arguments.parseArguments(this.getDefaultGameArguments(), configuration, features));
-        }
+        res.addAll(arguments.getGame(configuration));
         if (authInfo.getArguments() != null && authInfo.getArguments().getGame() != null && !authInfo.getArguments().getGame().isEmpty())
             res.addAll(Arguments.parseArguments(authInfo.getArguments().getGame(), configuration, features));
 
@@ -234,21 +228,57 @@ public class DefaultLauncher extends Launcher {
     protected void appendJvmArgs(CommandBuilder result) {
     }
 
+    /**
+     * Maps the classes archived by a previous launch of this version with the same Java and classpath,
+     * or lets the game archive the classes it has loaded when it exits if there is no such archive yet.
+     * Dynamic archives need Java 13 or later.
+     */
+    private void appendClassDataSharingArgs(CommandBuilder res, LaunchPlan plan) {
+        JavaVersion java = options.getJava();
+        if (java.getMajorVersion() < 13)
+            return;
+
+        File directory = new File(repository.getVersionRoot(version.getId()), "cds");
+        String javaKey = Hex.encodeHex(DigestUtils.digest("SHA-1", java.getBinary().toAbsolutePath() + "\n" + java.getVersion())).substring(0, 16);
+        File archive = new File(directory, javaKey + "-" + plan.getFingerprint().substring(0, 16) + ".jsa");
+        if (archive.isFile()) {
+            res.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            return;
+        }
+
+        if (!FileUtils.makeDirectory(directory)) {
+            LOG.warning("Unable to create class data sharing directory " + directory);
+            return;
+        }
+
+        // Archives of this Java for an outdated classpath will never be mapped again.
+        File[] outdated = directory.listFiles((dir, name) -> name.startsWith(javaKey + "-") && name.endsWith(".jsa"));
+        if (outdated != null)
+            for (File file : outdated)
+                if (!file.delete())
+                    LOG.warning("Unable to delete outdated class data sharing archive " + file);
+
+        LOG.info("Archiving classes of " + version.getId() + " to " + archive + " when the game exits");
+        res.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+    }
+
     public void decompressNatives(File destination) throws NotDecompressingNativesException {
+        decompressNatives(repository, version, destination);
+    }
+
+    /**
+     * Extracts the native libraries of the version, which is cheap if they were extracted before and have not changed since.
+     * Launchers call this before starting the game, it may also be called earlier once the libraries are downloaded.
+     */
+    public static void decompressNatives(GameRepository repository, Version version, File destination) throws NotDecompressingNativesException {
         try {
-            FileUtils.cleanDirectoryQuietly(destination);
-            for (Library library : version.getLibraries())
-                if (library.isNative())
-                    new Unzipper(repository.getLibraryFile(version, library), destination)
-                            .setFilter((zipEntry, isDirectory, destFile, path) -> {
-                                if (!isDirectory && Files.isRegularFile(destFile) && Files.size(destFile) == Files.size(zipEntry))
-                                    return false;
-                                String ext = FileUtils.getExtension(destFile);
-                                if (ext.equals("sha1") || ext.equals("git"))
-                                    return false;
-                                return library.getExtract().shouldExtract(path);
-                            })
-                            .setReplaceExistentFile(false).unzip();
+            List<Library> natives = version.getLibraries().stream()
+                    .filter(Library::isNative)
+                    .collect(Collectors.toList());
+            CacheRepository cacheRepository = CacheRepository.getInstance();
+            new NativesCache(cacheRepository)
+                    .extract(natives, library -> repository.getLibraryFile(version, library), destination.toPath());
+            cacheRepository.getHashIndex().save();
         } catch (IOException e) {
             throw new NotDecompressingNativesException(e);
         }
@@ -0,0 +1,164 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.launch;
+
+import com.nexusnode.launcher.game.JvmTuningProfile;
+import com.nexusnode.launcher.util.platform.JavaVersion;
+import com.nexusnode.launcher.util.platform.OperatingSystem;
+import com.nexusnode.launcher.util.platform.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the heap size and garbage collector arguments of a {@link JvmTuningProfile}
+ * for the Java running the game and the machine it runs on.
+ *
+ * Only flags accepted by the given Java are generated, for example ZGC is only chosen on Java 15 and later,
+ * where it is no longer experimental.
+ *
+ * @author bluebird6900
+ */
+final class JvmTuning {
+
+    private final JvmTuningProfile profile;
+    private final JavaVersion java;
+    private final int physicalMemory;
+    private final int processors;
+
+    /**
+     * @param physicalMemory the physical memory of this computer, in MB
+     * @param processors the number of processors available
+     */
+    JvmTuning(JvmTuningProfile profile, JavaVersion java, int physicalMemory, int processors) {
+        this.profile = profile == null ? JvmTuningProfile.BALANCED : profile;
+        this.java = java;
+        this.physicalMemory = physicalMemory;
+        this.processors = Math.max(1, processors);
+    }
+
+    /**
+     * Version settings always have a maximum memory, {@link OperatingSystem#SUGGESTED_MEMORY} unless changed,
+     * so profiles other than {@link JvmTuningProfile#BALANCED} size the heap themselves unless the user changed it.
+     *
+     * @param maxMemory the maximum heap in MB, null or non-positive if none
+     * @param maxMemoryChanged true if the user chose the maximum heap
+     * @return the maximum heap in MB
+     */
+    int getMaxHeap(Integer maxMemory, boolean maxMemoryChanged) {
+        if (maxMemory != null && maxMemory > 0 && (maxMemoryChanged || profile == JvmTuningProfile.BALANCED))
+            return maxMemory;
+        if (profile == JvmTuningProfile.LOW_MEMORY)
+            return clamp(physicalMemory / 8, 512, 2048);
+        return clamp(physicalMemory / 4, 1024, 4096);
+    }
+
+    /**
+     * @param minMemory the initial heap the user chose in MB, null or non-positive if not chosen
+     * @param maxHeap the maximum heap in MB
+     * @return the initial heap in MB, null if left to the JVM.
+     */
+    Integer getInitialHeap(Integer minMemory, int maxHeap) {
+        if (minMemory != null && minMemory > 0)
+            return minMemory;
+        switch (profile) {
+            case LOW_LATENCY:
+            case THROUGHPUT:
+                // Resizing the heap while playing costs full collections, allocate it upfront if the machine can afford it.
+                return maxHeap <= physicalMemory / 2 ? maxHeap : null;
+            case LOW_MEMORY:
+                return Math.min(256, maxHeap);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param maxHeap the maximum heap in MB
+     * @return the garbage collector arguments, empty if the version of Java is unknown.
+     */
+    List<String> getGarbageCollectorArguments(int maxHeap) {
+        List<String> res = new ArrayList<>();
+        if (java.getParsedVersion() < JavaVersion.JAVA_7)
+            return res;
+
+        switch (profile) {
+            case LOW_LATENCY:
+                if (java.getMajorVersion() >= 15 && java.getPlatform() != Platform.BIT_32 && maxHeap >= 2048)
+                    appendZ(res);
+                else
+                    appendG1(res, maxHeap, 25);
+                break;
+            case THROUGHPUT:
+                res.add("-XX:+UseParallelGC");
+                break;
+            case LOW_MEMORY:
+                if (processors <= 2 || maxHeap <= 1024) {
+                    res.add("-XX:+UseSerialGC");
+                } else {
+                    appendG1(res, maxHeap, 50);
+                    // Returns the unused heap to the system when the game idles.
+                    if (java.getMajorVersion() >= 12)
+                        res.add("-XX:G1PeriodicGCInterval=15000");
+                    if (java.getMajorVersion() >= 9)
+                        res.add("-XX:+UseStringDeduplication");
+                }
+                res.add("-XX:MinHeapFreeRatio=10");
+                res.add("-XX:MaxHeapFreeRatio=30");
+                break;
+            default:
+                appendG1(res, maxHeap, 50);
+                break;
+        }
+        return res;
+    }
+
+    private void appendG1(List<String> res, int maxHeap, int maxPauseMillis) {
+        // G1NewSizePercent is an experimental HotSpot option since Java 8, other VMs and Java 7 refuse to unlock or know it.
+        boolean experimental = java.isHotSpot() && java.getMajorVersion() >= 8;
+        if (experimental)
+            res.add("-XX:+UnlockExperimentalVMOptions");
+        res.add("-XX:+UseG1GC");
+        if (experimental)
+            res.add("-XX:G1NewSizePercent=20");
+        res.add("-XX:G1ReservePercent=20");
+        res.add("-XX:MaxGCPauseMillis=" + maxPauseMillis);
+        // About 512 regions, the bigger regions the fewer humongous allocations of chunk data.
+        res.add("-XX:G1HeapRegionSize=" + clamp(Integer.highestOneBit(Math.max(1, maxHeap / 512)), 1, 32) + "M");
+        res.add("-XX:ConcGCThreads=" + getConcurrentThreads());
+    }
+
+    private void appendZ(List<String> res) {
+        res.add("-XX:+UseZGC");
+        // Generational ZGC is opt-in on Java 21 and 22, the only mode since Java 23.
+        if (java.getMajorVersion() == 21 || java.getMajorVersion() == 22)
+            res.add("-XX:+ZGenerational");
+        res.add("-XX:ConcGCThreads=" + getConcurrentThreads());
+    }
+
+    /**
+     * Concurrent collection runs alongside the game, a quarter of the processors leaves the rest to the game threads.
+     */
+    private int getConcurrentThreads() {
+        return Math.max(1, processors / 4);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
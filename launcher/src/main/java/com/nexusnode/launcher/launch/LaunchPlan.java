@@ -0,0 +1,204 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.launch;
+
+import com.nexusnode.launcher.game.Arguments;
+import com.nexusnode.launcher.game.GameRepository;
+import com.nexusnode.launcher.game.Library;
+import com.nexusnode.launcher.game.Version;
+import com.nexusnode.launcher.util.DigestUtils;
+import com.nexusnode.launcher.util.Hex;
+import com.nexusnode.launcher.util.gson.JsonUtils;
+import com.nexusnode.launcher.util.platform.OperatingSystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The parts of a launch command line that are expensive to compute, cached per version.
+ *
+ * Plans are keyed by the version id and a digest of what the command line is computed from:
+ * the library files, the version jar and the arguments of the resolved version.
+ * The classpath is reused while that digest is equal and no library file has been added, removed or modified since,
+ * even if the version has been resolved again in between. Parsed arguments are reused while the placeholder values
+ * and features are equal too. The {@code ${auth_*}} placeholders are left in the cached arguments and substituted
+ * on every launch, so that credentials are neither kept by the cache nor invalidate it when the account changes.
+ *
+ * @author bluebird6900
+ */
+final class LaunchPlan {
+
+    private static final Map<String, LaunchPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final List<File> files;
+    private final long[] stamps;
+    private final String classpath;
+    private final String fingerprint;
+    private volatile ParsedArguments arguments;
+
+    private LaunchPlan(String key, List<File> files, long[] stamps, String classpath) {
+        this.key = key;
+        this.files = files;
+        this.stamps = stamps;
+        this.classpath = classpath;
+
+        StringBuilder builder = new StringBuilder(classpath);
+        for (long stamp : stamps)
+            builder.append('\n').append(stamp);
+        this.fingerprint = Hex.encodeHex(DigestUtils.digest("SHA-1", builder.toString()));
+    }
+
+    /**
+     * @param version the resolved version
+     * @return the cached plan of the version, or a new plan if the cached plan is outdated.
+     */
+    static LaunchPlan of(GameRepository repository, Version version) {
+        List<File> files = new ArrayList<>();
+        for (Library library : version.getLibraries())
+            if (library.appliesToCurrentEnvironment() && !library.isNative())
+                files.add(repository.getLibraryFile(version, library));
+        files.add(repository.getVersionJar(version));
+        String key = computeKey(version, files);
+
+        LaunchPlan plan = PLANS.get(version.getId());
+        if (plan != null && plan.isValidFor(key))
+            return plan;
+
+        plan = create(key, files);
+        PLANS.put(version.getId(), plan);
+        return plan;
+    }
+
+    private static String computeKey(Version version, List<File> files) {
+        StringBuilder builder = new StringBuilder(version.getId());
+        for (File file : files)
+            builder.append('\n').append(file.getAbsolutePath());
+        builder.append('\n').append(JsonUtils.GSON.toJson(version.getArguments().orElse(null)));
+        builder.append('\n').append(version.getMinecraftArguments().orElse(""));
+        return Hex.encodeHex(DigestUtils.digest("SHA-1", builder.toString()));
+    }
+
+    private static LaunchPlan create(String key, List<File> files) {
+        long[] stamps = new long[files.size()];
+        List<String> classpath = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            if (file.isFile()) {
+                stamps[i] = file.lastModified();
+                classpath.add(file.getAbsolutePath());
+            }
+        }
+        return new LaunchPlan(key, Collections.unmodifiableList(files), stamps, String.join(OperatingSystem.PATH_SEPARATOR, classpath));
+    }
+
+    private boolean isValidFor(String key) {
+        if (!this.key.equals(key))
+            return false;
+
+        // One stat per file, File.lastModified() is 0 for missing files as recorded.
+        for (int i = 0; i < files.size(); i++)
+            if (files.get(i).lastModified() != stamps[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the absolute paths of existing library files and the version jar, joined by the path separator.
+     */
+    String getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * @return the SHA-1 of the classpath and the modification times of its files, changes whenever a class may change.
+     */
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param configuration the values of the placeholders in the arguments
+     * @param features the features rules of the arguments depend on
+     * @param parser parses the arguments with the given configuration, which lacks the {@code ${auth_*}} placeholders,
+     *               if not parsed with equal configuration and features before
+     * @return the arguments with {@code ${auth_*}} placeholders not substituted yet,
+     * see {@link ParsedArguments#getJvm(Map)} and {@link ParsedArguments#getGame(Map)}.
+     */
+    ParsedArguments getArguments(Map<String, String> configuration, Map<String, Boolean> features, Function<Map<String, String>, ParsedArguments> parser) {
+        Map<String, String> cacheable = new HashMap<>(configuration);
+        cacheable.keySet().removeIf(LaunchPlan::isAuthPlaceholder);
+
+        ParsedArguments parsed = arguments;
+        if (parsed != null && parsed.configuration.equals(cacheable) && parsed.features.equals(features))
+            return parsed;
+
+        parsed = parser.apply(cacheable);
+        parsed.configuration.putAll(cacheable);
+        parsed.features.putAll(features);
+        arguments = parsed;
+        return parsed;
+    }
+
+    private static boolean isAuthPlaceholder(String key) {
+        return key.startsWith("${auth_");
+    }
+
+    static final class ParsedArguments {
+        // Filled before published by the volatile write, values may be null.
+        private final Map<String, String> configuration = new HashMap<>();
+        private final Map<String, Boolean> features = new HashMap<>();
+        private final List<String> jvm;
+        private final List<String> game;
+
+        /**
+         * @param jvm the jvm arguments provided by the version
+         * @param game the game arguments provided by the version
+         */
+        ParsedArguments(List<String> jvm, List<String> game) {
+            this.jvm = Collections.unmodifiableList(jvm);
+            this.game = Collections.unmodifiableList(game);
+        }
+
+        /**
+         * @param configuration the values of the placeholders, of which only {@code ${auth_*}} ones are substituted
+         */
+        List<String> getJvm(Map<String, String> configuration) {
+            return substitute(jvm, configuration);
+        }
+
+        /**
+         * @param configuration the values of the placeholders, of which only {@code ${auth_*}} ones are substituted
+         */
+        List<String> getGame(Map<String, String> configuration) {
+            return substitute(game, configuration);
+        }
+
+        private static List<String> substitute(List<String> arguments, Map<String, String> configuration) {
+            Map<String, String> auth = new HashMap<>(configuration);
+            auth.keySet().removeIf(key -> !isAuthPlaceholder(key));
+            return Arguments.parseStringArguments(arguments, auth);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.launch;
+
+import com.nexusnode.launcher.game.Library;
+import com.nexusnode.launcher.task.Schedulers;
+import com.nexusnode.launcher.util.CacheRepository;
+import com.nexusnode.launcher.util.Hex;
+import com.nexusnode.launcher.util.StringUtils;
+import com.nexusnode.launcher.util.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Extracts native libraries into a natives directory, reusing previous extractions.
+ *
+ * Extractions are keyed by the digests of the native jars and their extract rules.
+ * A natives directory extracted with the same key is left untouched as long as the files extracted into it are still there,
+ * and a key extracted before for another version is linked from cache/natives/&lt;key&gt; instead of unzipped again.
+ * Shared extractions are evicted with the cached objects of the {@link CacheRepository}.
+ *
+ * @author bluebird6900
+ */
+public final class NativesCache {
+
+    private static final String KEY_FILE = ".natives";
+    private static final String COMPLETE_FILE = ".complete";
+    /**
+     * Part of the key, changed whenever the format of the key file changes so that old key files are not trusted.
+     */
+    private static final String KEY_VERSION = "2";
+
+    private final CacheRepository cacheRepository;
+
+    /**
+     * @param cacheRepository hashes the native jars and shares extractions, if its cache directory is set.
+     *                        Shared extractions are hard linked if the repository links cached files.
+     */
+    public NativesCache(CacheRepository cacheRepository) {
+        this.cacheRepository = cacheRepository;
+    }
+
+    /**
+     * Makes {@code destination} contain the native libraries extracted from the native jars.
+     *
+     * @param libraries the native libraries, an earlier library takes precedence for files in more than one jar.
+     * @param jarOf the jar file of each library
+     * @param destination the natives directory
+     * @throws IOException if a jar cannot be read or the natives cannot be written.
+     */
+    public void extract(List<Library> libraries, Function<Library, File> jarOf, Path destination) throws IOException {
+        String key = computeKey(libraries, jarOf);
+        Path keyFile = destination.resolve(KEY_FILE);
+        if (isExtracted(keyFile, key))
+            return;
+
+        FileUtils.cleanDirectoryQuietly(destination.toFile());
+        Files.createDirectories(destination);
+
+        if (cacheRepository.getCacheDirectory() == null) {
+            unzip(libraries, jarOf, destination);
+        } else {
+            Path shared = cacheRepository.getNativesDirectory(key);
+            if (!Files.isRegularFile(shared.resolve(COMPLETE_FILE))) {
+                Path temp = Files.createTempDirectory(Files.createDirectories(shared.getParent()), key + "-");
+                try {
+                    unzip(libraries, jarOf, temp);
+                    Files.createFile(temp.resolve(COMPLETE_FILE));
+                    FileUtils.deleteDirectoryQuietly(shared.toFile());
+                    Files.move(temp, shared, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // Another launcher instance may have completed the same extraction.
+                    if (!Files.isRegularFile(shared.resolve(COMPLETE_FILE)))
+                        throw e;
+                } finally {
+                    FileUtils.deleteDirectoryQuietly(temp.toFile());
+                }
+            }
+            copyTree(shared, destination);
+            cacheRepository.touchNatives(key);
+        }
+
+        writeKeyFile(keyFile, key);
+    }
+
+    /**
+     * The key file has the key on its first line, followed by a line of size and relative path for each extracted file.
+     */
+    private static void writeKeyFile(Path keyFile, String key) throws IOException {
+        Path destination = keyFile.getParent();
+        StringBuilder builder = new StringBuilder(key).append('\n');
+        try (Stream<Path> files = Files.walk(destination)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || file.equals(keyFile))
+                    continue;
+                String path = destination.relativize(file).toString().replace(File.separatorChar, '/');
+                builder.append(Files.size(file)).append(' ').append(path).append('\n');
+            }
+        }
+        FileUtils.writeText(keyFile.toFile(), builder.toString());
+    }
+
+    /**
+     * @return true if the natives directory was extracted with the key and the extracted files still exist.
+     */
+    private static boolean isExtracted(Path keyFile, String key) throws IOException {
+        if (!Files.isRegularFile(keyFile))
+            return false;
+
+        List<String> lines = Files.readAllLines(keyFile, UTF_8);
+        if (lines.isEmpty() || !key.equals(lines.get(0)))
+            return false;
+
+        Path destination = keyFile.getParent();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isEmpty())
+                continue;
+            int space = line.indexOf(' ');
+            if (space < 0)
+                return false;
+            Path file = destination.resolve(line.substring(space + 1));
+            try {
+                if (!Files.isRegularFile(file) || Files.size(file) != Long.parseLong(line.substring(0, space)))
+                    return false;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String computeKey(List<Library> libraries, Function<Library, File> jarOf) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        digest.update((KEY_VERSION + "\n").getBytes(UTF_8));
+        for (Library library : libraries) {
+            digest.update(cacheRepository.getHashIndex().getHash(jarOf.apply(library).toPath(), "SHA-1").getBytes(UTF_8));
+            for (String exclude : library.getExtract().getExclude())
+                digest.update(("\0" + exclude).getBytes(UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Hex.encodeHex(digest.digest());
+    }
+
+    /**
+     * Extracts the jars in parallel on the io threads. Entries are assigned to jars up front,
+     * so that the first jar containing a file wins, as if the jars were extracted one by one.
+     */
+    private static void unzip(List<Library> libraries, Function<Library, File> jarOf, Path directory) throws IOException {
+        Path destination = directory.toAbsolutePath().normalize();
+        Map<String, Library> owners = new HashMap<>();
+        for (Library library : libraries) {
+            try (ZipFile zip = new ZipFile(jarOf.apply(library))) {
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (!entry.isDirectory() && shouldExtract(library, entry.getName()))
+                        owners.putIfAbsent(entry.getName(), library);
+                }
+            }
+        }
+
+        List<CompletableFuture<Void>> extractions = libraries.stream().map(library -> CompletableFuture.runAsync(() -> {
+            try (ZipFile zip = new ZipFile(jarOf.apply(library))) {
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (owners.get(entry.getName()) != library)
+                        continue;
+
+                    Path target = destination.resolve(entry.getName()).normalize();
+                    if (!target.startsWith(destination))
+                        throw new IOException("Zip entry " + entry.getName() + " escapes the natives directory");
+
+                    Files.createDirectories(target.getParent());
+                    try (InputStream input = zip.getInputStream(entry)) {
+                        Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Schedulers.io())).collect(Collectors.toList());
+
+        try {
+            CompletableFuture.allOf(extractions.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw e;
+        }
+    }
+
+    private static boolean shouldExtract(Library library, String name) {
+        String ext = StringUtils.substringAfterLast(name.substring(name.lastIndexOf('/') + 1), '.');
+        if (ext.equals("sha1") || ext.equals("git"))
+            return false;
+        return library.getExtract().shouldExtract(name);
+    }
+
+    private void copyTree(Path source, Path destination) throws IOException {
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || file.getFileName().toString().equals(COMPLETE_FILE))
+                    continue;
+
+                Path target = destination.resolve(source.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                if (cacheRepository.isLinking()) {
+                    try {
+                        Files.createLink(target, file);
+                        continue;
+                    } catch (IOException | UnsupportedOperationException ignored) {
+                        // not supported by the file system, copy it instead.
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -27,6 +27,8 @@ import com.nexusnode.launcher.Metadata;
 import com.nexusnode.launcher.auth.Account;
 import com.nexusnode.launcher.auth.AccountFactory;
 import com.nexusnode.launcher.auth.AuthenticationException;
+import com.nexusnode.launcher.auth.CredentialExpiredException;
+import com.nexusnode.launcher.auth.ServerDisconnectException;
 import com.nexusnode.launcher.auth.authlibinjector.AuthlibInjectorAccount;
 import com.nexusnode.launcher.auth.authlibinjector.AuthlibInjectorAccountFactory;
 import com.nexusnode.launcher.auth.authlibinjector.AuthlibInjectorArtifactProvider;
@@ -37,13 +39,19 @@ import com.nexusnode.launcher.auth.offline.OfflineAccount;
 import com.nexusnode.launcher.auth.offline.OfflineAccountFactory;
 import com.nexusnode.launcher.auth.yggdrasil.YggdrasilAccount;
 import com.nexusnode.launcher.auth.yggdrasil.YggdrasilAccountFactory;
+import com.nexusnode.launcher.game.LauncherHelper;
 import com.nexusnode.launcher.task.Schedulers;
+import com.nexusnode.launcher.util.platform.ManagedProcess;
 
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import static java.util.stream.Collectors.toList;
@@ -196,15 +204,8 @@ public final class Accounts {
         config().getAuthlibInjectorServers().addListener(onInvalidating(Accounts::removeDanglingAuthlibInjectorAccounts));
 
         Account selected = selectedAccount.get();
-        if (selected != null) {
-            Schedulers.io().execute(() -> {
-                try {
-                    selected.logIn();
-                } catch (AuthenticationException e) {
-                    LOG.log(Level.WARNING, "Failed to log " + selected + " in", e);
-                }
-            });
-        }
+        keepSessionValid(selected);
+        selectedAccount.addListener((a, b, newValue) -> keepSessionValid(newValue));
 
         for (AuthlibInjectorServer server : config().getAuthlibInjectorServers()) {
             if (selected instanceof AuthlibInjectorAccount && ((AuthlibInjectorAccount) selected).getServer() == server)
@@ -219,6 +220,85 @@ public final class Accounts {
         }
     }
 
+    // ==== session keeping ====
+    private static final long SESSION_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_SESSION_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+    private static final ScheduledExecutorService SESSION_KEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Session Keeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static Account sessionAccount;
+    private static ScheduledFuture<?> sessionKeeping;
+
+    /**
+     * Logs the selected account in in the background, and keeps validating its session before it expires,
+     * so that launching does not have to wait for the auth server.
+     */
+    private static synchronized void keepSessionValid(Account account) {
+        if (sessionKeeping != null) {
+            sessionKeeping.cancel(false);
+            sessionKeeping = null;
+        }
+        sessionAccount = account;
+        if (account == null)
+            return;
+
+        SESSION_KEEPER.execute(() -> {
+            try {
+                account.logIn();
+            } catch (AuthenticationException e) {
+                LOG.log(Level.WARNING, "Failed to log " + account + " in", e);
+            }
+        });
+
+        if (account instanceof YggdrasilAccount)
+            scheduleSessionCheck((YggdrasilAccount) account, SESSION_CHECK_INTERVAL, 0);
+    }
+
+    private static synchronized void scheduleSessionCheck(YggdrasilAccount account, long delay, int failures) {
+        if (sessionAccount != account)
+            return; // another account has been selected meanwhile
+        sessionKeeping = SESSION_KEEPER.schedule(() -> checkSession(account, delay, failures), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Validates the session unless a game is running, which already holds its access token.
+     * The interval doubles after each network failure, and is reset once the auth server is reachable again.
+     *
+     * @param delay the delay since the last check
+     * @param failures the number of checks failed in a row
+     */
+    private static void checkSession(YggdrasilAccount account, long delay, int failures) {
+        if (isGameRunning()) {
+            scheduleSessionCheck(account, SESSION_CHECK_INTERVAL, failures);
+            return;
+        }
+
+        long nextDelay = SESSION_CHECK_INTERVAL;
+        try {
+            account.prevalidate();
+            failures = 0;
+        } catch (CredentialExpiredException e) {
+            // Only logging in with password helps, which happens when launching.
+            LOG.info("Credential of " + account + " has expired, stop validating it in the background");
+            return;
+        } catch (ServerDisconnectException e) {
+            failures++;
+            nextDelay = Math.min(delay * 2, MAX_SESSION_CHECK_INTERVAL);
+            LOG.log(failures == 1 ? Level.WARNING : Level.FINE, "Unable to reach the auth server of " + account + ", validating again in " + nextDelay / 1000 + "s", e);
+        } catch (AuthenticationException e) {
+            failures++;
+            LOG.log(failures == 1 ? Level.WARNING : Level.FINE, "Failed to validate the session of " + account, e);
+        }
+        scheduleSessionCheck(account, nextDelay, failures);
+    }
+
+    private static boolean isGameRunning() {
+        return LauncherHelper.PROCESSES.stream().anyMatch(ManagedProcess::isRunning);
+    }
+    // ====
+
     public static ObservableList<Account> getAccounts() {
         return accounts;
     }
@@ -134,6 +134,19 @@ public final class Config implements Cloneable, Observable {
     @SerializedName("logLines")
     private IntegerProperty logLines = new SimpleIntegerProperty(100);
 
+    /**
+     * The size in MiB the download cache is shrunk to after launching a game, 0 if unlimited.
+     */
+    @SerializedName("cacheSizeLimit")
+    private IntegerProperty cacheSizeLimit = new SimpleIntegerProperty(0);
+
+    /**
+     * True if cached files are hard linked into game directories instead of copied.
+     * Off by default, since a game file modified in place would modify the cached object too.
+     */
+    @SerializedName("linkCachedFiles")
+    private BooleanProperty linkCachedFiles = new SimpleBooleanProperty(false);
+
     @SerializedName("authlibInjectorServers")
     private ObservableList<AuthlibInjectorServer> authlibInjectorServers = FXCollections.observableArrayList(server -> new Observable[] { server });
 
@@ -409,6 +422,30 @@ public final class Config implements Cloneable, Observable {
         return logLines;
     }
 
+    public int getCacheSizeLimit() {
+        return cacheSizeLimit.get();
+    }
+
+    public void setCacheSizeLimit(int cacheSizeLimit) {
+        this.cacheSizeLimit.set(cacheSizeLimit);
+    }
+
+    public IntegerProperty cacheSizeLimitProperty() {
+        return cacheSizeLimit;
+    }
+
+    public boolean isLinkCachedFiles() {
+        return linkCachedFiles.get();
+    }
+
+    public void setLinkCachedFiles(boolean linkCachedFiles) {
+        this.linkCachedFiles.set(linkCachedFiles);
+    }
+
+    public BooleanProperty linkCachedFilesProperty() {
+        return linkCachedFiles;
+    }
+
     public ObservableList<AuthlibInjectorServer> getAuthlibInjectorServers() {
         return authlibInjectorServers;
     }
@@ -19,8 +19,6 @@ package com.nexusnode.launcher.setting;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.nexusnode.launcher.util.InvocationDispatcher;
-import com.nexusnode.launcher.util.Lang;
 import com.nexusnode.launcher.util.io.FileUtils;
 import com.nexusnode.launcher.util.platform.OperatingSystem;
 
@@ -31,7 +29,6 @@ import java.nio.file.Paths;
 import java.util.Map;
 import java.util.logging.Level;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static com.nexusnode.launcher.util.Logging.LOG;
 
 public final class ConfigHolder {
@@ -43,6 +40,7 @@ public final class ConfigHolder {
 
     private static Path configLocation;
     private static Config configInstance;
+    private static ConfigPersistence persistence;
     private static boolean newlyCreated;
 
     public static Config config() {
@@ -63,6 +61,7 @@ public final class ConfigHolder {
 
         configLocation = locateConfig();
         configInstance = loadConfig();
+        persistence = new ConfigPersistence(configLocation, configInstance::toJson);
         configInstance.addListener(source -> markConfigDirty());
 
         Settings.init();
@@ -122,26 +121,26 @@ public final class ConfigHolder {
         return new Config();
     }
 
-    private static InvocationDispatcher<String> configWriter = InvocationDispatcher.runOn(Lang::thread, content -> {
-        try {
-            writeToConfig(content);
-        } catch (IOException e) {
-            LOG.log(Level.SEVERE, "Failed to save config", e);
-        }
-    });
-
-    private static void writeToConfig(String content) throws IOException {
-        LOG.info("Saving config");
-        synchronized (configLocation) {
-            Files.write(configLocation, content.getBytes(UTF_8));
+    public static ConfigPersistence persistence() {
+        if (persistence == null) {
+            throw new IllegalStateException("Configuration hasn't been loaded");
         }
+        return persistence;
     }
 
     static void markConfigDirty() {
-        configWriter.accept(configInstance.toJson());
+        persistence.markDirty();
+    }
+
+    /**
+     * Saves pending config changes before the launcher exits.
+     */
+    public static void flushConfig() {
+        if (persistence != null)
+            persistence.flush();
     }
 
     private static void saveConfigSync() throws IOException {
-        writeToConfig(configInstance.toJson());
+        persistence.save();
     }
 }
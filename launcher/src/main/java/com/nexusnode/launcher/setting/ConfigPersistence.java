@@ -0,0 +1,178 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.setting;
+
+import com.nexusnode.launcher.util.platform.OperatingSystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import static com.nexusnode.launcher.util.Logging.LOG;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Saves the config in the background.
+ *
+ * Changes within {@link #SAVE_DELAY} milliseconds of the first unsaved change are coalesced into one save,
+ * which serializes the config on the saver thread and replaces the config file atomically.
+ *
+ * @author bluebird6900
+ */
+public final class ConfigPersistence {
+
+    private static final long SAVE_DELAY = 500;
+
+    private final Path location;
+    private final Supplier<String> serializer;
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Config Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final AtomicLong saveCount = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+    private final AtomicLong lastSaveNanos = new AtomicLong();
+    private final AtomicLong maxSaveNanos = new AtomicLong();
+
+    ConfigPersistence(Path location, Supplier<String> serializer) {
+        this.location = location;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Schedules a save unless one is already pending.
+     */
+    void markDirty() {
+        dirty.set(true);
+        if (scheduled.compareAndSet(false, true))
+            saver.schedule(this::saveScheduled, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void saveScheduled() {
+        scheduled.set(false);
+        try {
+            saveIfDirty();
+        } catch (ConcurrentModificationException e) {
+            // The config was changed while being serialized, the change has marked it dirty again.
+            LOG.log(Level.FINE, "Config changed while saving, saving it again", e);
+            markDirty();
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to save config", e);
+        }
+    }
+
+    /**
+     * Saves pending changes on the calling thread, for example before the launcher exits.
+     */
+    void flush() {
+        try {
+            saveIfDirty();
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Failed to save config", e);
+        }
+    }
+
+    private synchronized void saveIfDirty() throws IOException {
+        if (dirty.getAndSet(false))
+            save();
+    }
+
+    /**
+     * Serializes and writes the config on the calling thread.
+     */
+    synchronized void save() throws IOException {
+        long start = System.nanoTime();
+        byte[] content;
+        try {
+            content = serializer.get().getBytes(UTF_8);
+        } catch (RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+
+        try {
+            write(content);
+        } catch (IOException e) {
+            dirty.set(true);
+            throw e;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        saveCount.incrementAndGet();
+        savedBytes.addAndGet(content.length);
+        lastSaveNanos.set(elapsed);
+        maxSaveNanos.accumulateAndGet(elapsed, Math::max);
+        LOG.info("Saved config (" + content.length + " bytes) in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+    }
+
+    private void write(byte[] content) throws IOException {
+        Path target = Files.exists(location) ? location.toRealPath() : location.toAbsolutePath();
+        boolean hidden = OperatingSystem.CURRENT_OS == OperatingSystem.WINDOWS && Files.exists(target) && Files.isHidden(target);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Atomic replacement is not supported here, for example by some network file systems.
+            LOG.log(Level.WARNING, "Unable to replace config " + target + " atomically, overwriting it", e);
+            Files.deleteIfExists(temp);
+            Files.write(target, content);
+        }
+
+        if (hidden) {
+            try {
+                Files.setAttribute(target, "dos:hidden", true);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to set hidden attribute of " + target, e);
+            }
+        }
+    }
+
+    public long getSaveCount() {
+        return saveCount.get();
+    }
+
+    /**
+     * @return the total size of the config written, in bytes.
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    public long getLastSaveLatency(TimeUnit unit) {
+        return unit.convert(lastSaveNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxSaveLatency(TimeUnit unit) {
+        return unit.convert(maxSaveNanos.get(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -21,6 +21,7 @@ import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.value.ObservableObjectValue;
 import com.nexusnode.launcher.util.StringUtils;
+import com.nexusnode.launcher.util.io.HttpTransport;
 
 import java.net.Authenticator;
 import java.net.InetSocketAddress;
@@ -85,6 +86,7 @@ public final class ProxyManager {
 
     private static void updateSystemProxy() {
         Proxy proxy = proxyProperty.get();
+        HttpTransport.getInstance().setProxy(proxy);
         if (proxy.type() == Proxy.Type.DIRECT) {
             System.clearProperty("http.proxyHost");
             System.clearProperty("http.proxyPort");
@@ -58,6 +58,12 @@ public class Settings {
                 return getDefaultCommonDirectory();
             }
         }, config().commonDirectoryProperty(), config().commonDirTypeProperty()));
+
+        HMCLCacheRepository.REPOSITORY.setMaxSize(Math.max(0, config().getCacheSizeLimit()) * 1024L * 1024L);
+        config().cacheSizeLimitProperty().addListener((a, b, newValue) ->
+                HMCLCacheRepository.REPOSITORY.setMaxSize(Math.max(0, newValue.intValue()) * 1024L * 1024L));
+        HMCLCacheRepository.REPOSITORY.setLinking(config().isLinkCachedFiles());
+        config().linkCachedFilesProperty().addListener((a, b, newValue) -> HMCLCacheRepository.REPOSITORY.setLinking(newValue));
     }
 
     public static String getDefaultCommonDirectory() {
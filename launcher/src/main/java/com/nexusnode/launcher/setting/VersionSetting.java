@@ -23,6 +23,7 @@ import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
 import com.nexusnode.launcher.Metadata;
 import com.nexusnode.launcher.game.GameDirectoryType;
+import com.nexusnode.launcher.game.JvmTuningProfile;
 import com.nexusnode.launcher.game.LaunchOptions;
 import com.nexusnode.launcher.util.Lang;
 import com.nexusnode.launcher.util.StringUtils;
@@ -48,6 +49,10 @@ import static com.nexusnode.launcher.setting.ConfigHolder.config;
 @JsonAdapter(VersionSetting.Serializer.class)
 public final class VersionSetting implements Cloneable {
 
+    public VersionSetting() {
+        maxMemoryProperty.addListener((a, b, newValue) -> setMaxMemoryChanged(true));
+    }
+
     public transient String id;
 
     private boolean global = false;
@@ -192,6 +197,41 @@ public final class VersionSetting implements Cloneable {
         maxMemoryProperty.set(maxMemory);
     }
 
+    private final BooleanProperty maxMemoryChangedProperty = new SimpleBooleanProperty(this, "maxMemoryChanged", false);
+
+    public BooleanProperty maxMemoryChangedProperty() {
+        return maxMemoryChangedProperty;
+    }
+
+    /**
+     * True if the maximum memory has been changed from {@link OperatingSystem#SUGGESTED_MEMORY},
+     * set whenever the maximum memory changes.
+     */
+    public boolean isMaxMemoryChanged() {
+        return maxMemoryChangedProperty.get();
+    }
+
+    public void setMaxMemoryChanged(boolean maxMemoryChanged) {
+        maxMemoryChangedProperty.set(maxMemoryChanged);
+    }
+
+    private final ObjectProperty<JvmTuningProfile> tuningProfileProperty = new SimpleObjectProperty<>(this, "tuningProfile", JvmTuningProfile.BALANCED);
+
+    public ObjectProperty<JvmTuningProfile> tuningProfileProperty() {
+        return tuningProfileProperty;
+    }
+
+    /**
+     * The garbage collector and heap sizing the game runs with.
+     */
+    public JvmTuningProfile getTuningProfile() {
+        return tuningProfileProperty.get();
+    }
+
+    public void setTuningProfile(JvmTuningProfile tuningProfile) {
+        tuningProfileProperty.set(tuningProfile);
+    }
+
     /**
      * The minimum memory that JVM can allocate for heap.
      */
@@ -280,6 +320,23 @@ public final class VersionSetting implements Cloneable {
         noJVMArgsProperty.set(noJVMArgs);
     }
 
+    private final BooleanProperty classDataSharingProperty = new SimpleBooleanProperty(this, "classDataSharing", false);
+
+    public BooleanProperty classDataSharingProperty() {
+        return classDataSharingProperty;
+    }
+
+    /**
+     * True if the classes loaded by the game are archived on its first launch and mapped from the archive afterwards.
+     */
+    public boolean isClassDataSharing() {
+        return classDataSharingProperty.get();
+    }
+
+    public void setClassDataSharing(boolean classDataSharing) {
+        classDataSharingProperty.set(classDataSharing);
+    }
+
     private final BooleanProperty notCheckJVMProperty = new SimpleBooleanProperty(this, "notCheckJVM", false);
 
     public BooleanProperty notCheckJVMProperty() {
@@ -514,12 +571,15 @@ public final class VersionSetting implements Cloneable {
         javaDirProperty.addListener(listener);
         wrapperProperty.addListener(listener);
         permSizeProperty.addListener(listener);
+        tuningProfileProperty.addListener(listener);
         maxMemoryProperty.addListener(listener);
+        maxMemoryChangedProperty.addListener(listener);
         minMemoryProperty.addListener(listener);
         preLaunchCommandProperty.addListener(listener);
         javaArgsProperty.addListener(listener);
         minecraftArgsProperty.addListener(listener);
         noJVMArgsProperty.addListener(listener);
+        classDataSharingProperty.addListener(listener);
         notCheckGameProperty.addListener(listener);
         notCheckJVMProperty.addListener(listener);
         showLogsProperty.addListener(listener);
@@ -544,15 +604,18 @@ public final class VersionSetting implements Cloneable {
                 .setMinecraftArgs(getMinecraftArgs())
                 .setJavaArgs(getJavaArgs())
                 .setMaxMemory(getMaxMemory())
+                .setMaxMemoryChanged(isMaxMemoryChanged())
                 .setMinMemory(getMinMemory())
                 .setMetaspace(Lang.toIntOrNull(getPermSize()))
+                .setTuningProfile(getTuningProfile())
                 .setWidth(getWidth())
                 .setHeight(getHeight())
                 .setFullscreen(isFullscreen())
                 .setServerIp(getServerIp())
                 .setWrapper(getWrapper())
                 .setPrecalledCommand(getPreLaunchCommand())
-                .setNoGeneratedJVMArgs(isNoJVMArgs());
+                .setNoGeneratedJVMArgs(isNoJVMArgs())
+                .setClassDataSharing(isClassDataSharing());
         if (config().hasProxy()) {
             builder.setProxyHost(config().getProxyHost());
             builder.setProxyPort(config().getProxyPort());
@@ -573,12 +636,15 @@ public final class VersionSetting implements Cloneable {
         versionSetting.setJavaDir(getJavaDir());
         versionSetting.setWrapper(getWrapper());
         versionSetting.setPermSize(getPermSize());
+        versionSetting.setTuningProfile(getTuningProfile());
         versionSetting.setMaxMemory(getMaxMemory());
+        versionSetting.setMaxMemoryChanged(isMaxMemoryChanged());
         versionSetting.setMinMemory(getMinMemory());
         versionSetting.setPreLaunchCommand(getPreLaunchCommand());
         versionSetting.setJavaArgs(getJavaArgs());
         versionSetting.setMinecraftArgs(getMinecraftArgs());
         versionSetting.setNoJVMArgs(isNoJVMArgs());
+        versionSetting.setClassDataSharing(isClassDataSharing());
         versionSetting.setNotCheckGame(isNotCheckGame());
         versionSetting.setNotCheckJVM(isNotCheckJVM());
         versionSetting.setShowLogs(isShowLogs());
@@ -602,6 +668,7 @@ public final class VersionSetting implements Cloneable {
             obj.addProperty("javaArgs", src.getJavaArgs());
             obj.addProperty("minecraftArgs", src.getMinecraftArgs());
             obj.addProperty("maxMemory", src.getMaxMemory() <= 0 ? OperatingSystem.SUGGESTED_MEMORY : src.getMaxMemory());
+            obj.addProperty("maxMemoryChanged", src.isMaxMemoryChanged());
             obj.addProperty("minMemory", src.getMinMemory());
             obj.addProperty("permSize", src.getPermSize());
             obj.addProperty("width", src.getWidth());
@@ -613,12 +680,14 @@ public final class VersionSetting implements Cloneable {
             obj.addProperty("wrapper", src.getWrapper());
             obj.addProperty("fullscreen", src.isFullscreen());
             obj.addProperty("noJVMArgs", src.isNoJVMArgs());
+            obj.addProperty("classDataSharing", src.isClassDataSharing());
             obj.addProperty("notCheckGame", src.isNotCheckGame());
             obj.addProperty("notCheckJVM", src.isNotCheckJVM());
             obj.addProperty("showLogs", src.isShowLogs());
             obj.addProperty("gameDir", src.getGameDir());
             obj.addProperty("launcherVisibility", src.getLauncherVisibility().ordinal());
             obj.addProperty("gameDirType", src.getGameDirType().ordinal());
+            obj.addProperty("tuningProfile", src.getTuningProfile().ordinal());
             obj.addProperty("defaultJavaPath", src.getDefaultJavaPath());
 
             return obj;
@@ -639,6 +708,9 @@ public final class VersionSetting implements Cloneable {
             vs.setJavaArgs(Optional.ofNullable(obj.get("javaArgs")).map(JsonElement::getAsString).orElse(""));
             vs.setMinecraftArgs(Optional.ofNullable(obj.get("minecraftArgs")).map(JsonElement::getAsString).orElse(""));
             vs.setMaxMemory(maxMemoryN);
+            // Settings saved before the flag existed only kept the maximum memory, which is the suggested one unless changed.
+            boolean maxMemoryChangedN = maxMemoryN != OperatingSystem.SUGGESTED_MEMORY;
+            vs.setMaxMemoryChanged(Optional.ofNullable(obj.get("maxMemoryChanged")).map(JsonElement::getAsBoolean).orElse(maxMemoryChangedN));
             vs.setMinMemory(Optional.ofNullable(obj.get("minMemory")).map(JsonElement::getAsInt).orElse(null));
             vs.setPermSize(Optional.ofNullable(obj.get("permSize")).map(JsonElement::getAsString).orElse(""));
             vs.setWidth(Optional.ofNullable(obj.get("width")).map(JsonElement::getAsJsonPrimitive).map(this::parseJsonPrimitive).orElse(0));
@@ -651,11 +723,13 @@ public final class VersionSetting implements Cloneable {
             vs.setGameDir(Optional.ofNullable(obj.get("gameDir")).map(JsonElement::getAsString).orElse(""));
             vs.setFullscreen(Optional.ofNullable(obj.get("fullscreen")).map(JsonElement::getAsBoolean).orElse(false));
             vs.setNoJVMArgs(Optional.ofNullable(obj.get("noJVMArgs")).map(JsonElement::getAsBoolean).orElse(false));
+            vs.setClassDataSharing(Optional.ofNullable(obj.get("classDataSharing")).map(JsonElement::getAsBoolean).orElse(false));
             vs.setNotCheckGame(Optional.ofNullable(obj.get("notCheckGame")).map(JsonElement::getAsBoolean).orElse(false));
             vs.setNotCheckJVM(Optional.ofNullable(obj.get("notCheckJVM")).map(JsonElement::getAsBoolean).orElse(false));
             vs.setShowLogs(Optional.ofNullable(obj.get("showLogs")).map(JsonElement::getAsBoolean).orElse(false));
             vs.setLauncherVisibility(LauncherVisibility.values()[Optional.ofNullable(obj.get("launcherVisibility")).map(JsonElement::getAsInt).orElse(1)]);
             vs.setGameDirType(GameDirectoryType.values()[Optional.ofNullable(obj.get("gameDirType")).map(JsonElement::getAsInt).orElse(0)]);
+            vs.setTuningProfile(JvmTuningProfile.values()[Optional.ofNullable(obj.get("tuningProfile")).map(JsonElement::getAsInt).orElse(0)]);
             vs.setDefaultJavaPath(Optional.ofNullable(obj.get("defaultJavaPath")).map(JsonElement::getAsString).orElse(null));
 
             return vs;
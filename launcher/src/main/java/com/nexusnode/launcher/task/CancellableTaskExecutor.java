@@ -17,16 +17,16 @@
  */
 package com.nexusnode.launcher.task;
 
-import com.nexusnode.launcher.util.Logging;
-import com.nexusnode.launcher.util.function.ExceptionalRunnable;
-
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.UnaryOperator;
-import java.util.logging.Level;
 
-public class CancellableTaskExecutor extends TaskExecutor {
+public class CancellableTaskExecutor extends TaskGraphExecutor<Void> {
+
+    /**
+     * The maximum number of sibling tasks running at the same time.
+     */
+    private static final int MAX_CONCURRENT_SUBTASKS = 64;
 
     private final ConcurrentLinkedQueue<Future<?>> workerQueue = new ConcurrentLinkedQueue<>();
     private Executor scheduler = Schedulers.newThread();
@@ -39,7 +39,7 @@ public class CancellableTaskExecutor extends TaskExecutor {
     public TaskExecutor start() {
         taskListeners.forEach(TaskListener::onStart);
         workerQueue.add(Schedulers.schedule(scheduler, wrap(() -> {
-            boolean flag = executeTasks(null, Collections.singleton(firstTask));
+            boolean flag = executeTasks(null, null, Collections.singleton(firstTask));
             taskListeners.forEach(it -> it.onStop(flag, this));
         })));
         return this;
@@ -50,7 +50,7 @@ public class CancellableTaskExecutor extends TaskExecutor {
         taskListeners.forEach(TaskListener::onStart);
         AtomicBoolean flag = new AtomicBoolean(true);
         Future<?> future = Schedulers.schedule(scheduler, wrap(() -> {
-            flag.set(executeTasks(null, Collections.singleton(firstTask)));
+            flag.set(executeTasks(null, null, Collections.singleton(firstTask)));
             taskListeners.forEach(it -> it.onStop(flag.get(), this));
         }));
         workerQueue.add(future);
@@ -74,17 +74,33 @@ public class CancellableTaskExecutor extends TaskExecutor {
         }
     }
 
-    private boolean executeTasks(Task<?> parentTask, Collection<? extends Task<?>> tasks) throws InterruptedException {
+    @Override
+    protected boolean isCancelled(Void scope) {
+        return cancelled.get();
+    }
+
+    @Override
+    protected boolean executeTasks(Void scope, Task<?> parentTask, Collection<? extends Task<?>> tasks) throws InterruptedException {
         if (tasks.isEmpty())
             return true;
 
         totTask.addAndGet(tasks.size());
         AtomicBoolean success = new AtomicBoolean(true);
         CountDownLatch latch = new CountDownLatch(tasks.size());
+        // Each invoker occupies a thread until its task finishes, bound them so that
+        // thousands of sibling downloads do not spawn thousands of threads.
+        Semaphore slots = new Semaphore(MAX_CONCURRENT_SUBTASKS);
         for (Task<?> task : tasks) {
             if (cancelled.get())
                 return false;
-            Invoker invoker = new Invoker(parentTask, task, latch, success);
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            if (cancelled.get())
+                return false;
+            Invoker invoker = new Invoker(parentTask, task, latch, success, slots);
             try {
                 Future<?> future = Schedulers.schedule(scheduler, invoker);
                 workerQueue.add(future);
@@ -104,186 +120,20 @@ public class CancellableTaskExecutor extends TaskExecutor {
         return success.get() && !cancelled.get();
     }
 
-    private synchronized void updateStageProperties(String stage, Map<String, Object> taskProperties) {
-        stageProperties.putIfAbsent(stage, new HashMap<>());
-        Map<String, Object> prop = stageProperties.get(stage);
-        for (Map.Entry<String, Object> entry : taskProperties.entrySet()) {
-            if (entry.getValue() instanceof UnaryOperator) {
-                prop.put(entry.getKey(), ((UnaryOperator) entry.getValue()).apply(prop.get(entry.getKey())));
-            } else {
-                prop.put(entry.getKey(), entry.getValue());
-            }
-        }
-        taskListeners.forEach(taskListener -> taskListener.onPropertiesUpdate(stageProperties));
-    }
-
-    private boolean executeTask(Task<?> parentTask, Task<?> task) {
-        task.setCancelled(this::isCancelled);
-
-        if (cancelled.get()) {
-            task.setState(Task.TaskState.FAILED);
-            task.setException(new CancellationException());
-            return false;
-        }
-
-        task.setState(Task.TaskState.READY);
-        if (parentTask != null && task.getStage() == null)
-            task.setStage(parentTask.getStage());
-
-        if (task.getSignificance().shouldLog())
-            Logging.LOG.log(Level.FINE, "Executing task: " + task.getName());
-
-        taskListeners.forEach(it -> it.onReady(task));
-
-        boolean flag = false;
-
-        try {
-            if (task.doPreExecute()) {
-                try {
-                    Schedulers.schedule(task.getExecutor(), wrap(task::preExecute)).get();
-                } catch (ExecutionException e) {
-                    rethrow(e);
-                }
-            }
-
-            Collection<? extends Task<?>> dependents = task.getDependents();
-            boolean doDependentsSucceeded = executeTasks(task, dependents);
-            Exception dependentsException = dependents.stream().map(Task::getException)
-                    .filter(Objects::nonNull)
-                    .filter(x -> !(x instanceof CancellationException))
-                    .filter(x -> !(x instanceof InterruptedException))
-                    .findAny().orElse(null);
-            if (!doDependentsSucceeded && task.isRelyingOnDependents() || cancelled.get()) {
-                task.setException(dependentsException);
-                throw new ExecutionException(dependentsException);
-            }
-
-            if (doDependentsSucceeded)
-                task.setDependentsSucceeded();
-
-            try {
-                Schedulers.schedule(task.getExecutor(), wrap(() -> {
-                    task.setState(Task.TaskState.RUNNING);
-                    taskListeners.forEach(it -> it.onRunning(task));
-                    task.execute();
-                })).get();
-            } catch (ExecutionException e) {
-                rethrow(e);
-            } finally {
-                task.setState(Task.TaskState.EXECUTED);
-            }
-
-            if (task.properties != null) {
-                updateStageProperties(task.getStage(), task.properties);
-            }
-
-            Collection<? extends Task<?>> dependencies = task.getDependencies();
-            boolean doDependenciesSucceeded = executeTasks(task, dependencies);
-            Exception dependenciesException = dependencies.stream().map(Task::getException)
-                    .filter(Objects::nonNull)
-                    .filter(x -> !(x instanceof CancellationException))
-                    .filter(x -> !(x instanceof InterruptedException))
-                    .findAny().orElse(null);
-
-            if (doDependenciesSucceeded)
-                task.setDependenciesSucceeded();
-
-            if (task.doPostExecute()) {
-                try {
-                    Schedulers.schedule(task.getExecutor(), wrap(task::postExecute)).get();
-                } catch (ExecutionException e) {
-                    rethrow(e);
-                }
-            }
-
-            if (!doDependenciesSucceeded && task.isRelyingOnDependencies()) {
-                Logging.LOG.severe("Subtasks failed for " + task.getName());
-                task.setException(dependenciesException);
-                throw new ExecutionException(dependenciesException);
-            }
-
-            flag = true;
-            if (task.getSignificance().shouldLog()) {
-                Logging.LOG.log(Level.FINER, "Task finished: " + task.getName());
-            }
-
-            if (task.properties != null) {
-                updateStageProperties(task.getStage(), task.properties);
-            }
-
-            task.onDone().fireEvent(new TaskEvent(this, task, false));
-            taskListeners.forEach(it -> it.onFinished(task));
-        } catch (RejectedExecutionException e) {
-            Logging.LOG.log(Level.SEVERE, "Task rejected: " + task.getName(), e);
-        } catch (Exception throwable) {
-            Throwable resolved = resolveException(throwable);
-            if (resolved instanceof Exception) {
-                Exception e = (Exception) resolved;
-                if (e instanceof InterruptedException || e instanceof CancellationException) {
-                    task.setException(e);
-                    if (task.getSignificance().shouldLog()) {
-                        Logging.LOG.log(Level.FINE, "Task aborted: " + task.getName());
-                    }
-                    task.onDone().fireEvent(new TaskEvent(this, task, true));
-                    taskListeners.forEach(it -> it.onFailed(task, e));
-                } else {
-                    task.setException(e);
-                    exception = e;
-                    if (task.getSignificance().shouldLog()) {
-                        Logging.LOG.log(Level.FINE, "Task failed: " + task.getName(), e);
-                    }
-                    task.onDone().fireEvent(new TaskEvent(this, task, true));
-                    taskListeners.forEach(it -> it.onFailed(task, e));
-                }
-            } else if (resolved instanceof Error) {
-                throw (Error) resolved;
-            }
-        }
-        task.setState(flag ? Task.TaskState.SUCCEEDED : Task.TaskState.FAILED);
-        return flag;
-    }
-
-    private static Throwable resolveException(Throwable e) {
-        if (e instanceof ExecutionException || e instanceof CompletionException)
-            return resolveException(e.getCause());
-        else
-            return e;
-    }
-
-    private static void rethrow(Throwable e) {
-        if (e == null)
-            return;
-        if (e instanceof ExecutionException || e instanceof CompletionException) { // including UncheckedException and UncheckedThrowable
-            rethrow(e.getCause());
-        } else if (e instanceof RuntimeException) {
-            throw (RuntimeException) e;
-        } else {
-            throw new CompletionException(e);
-        }
-    }
-
-    private static Runnable wrap(ExceptionalRunnable<?> runnable) {
-        return () -> {
-            try {
-                runnable.run();
-            } catch (Exception e) {
-                rethrow(e);
-            }
-        };
-    }
-
     private class Invoker implements Runnable {
 
         private final Task<?> parentTask;
         private final Task<?> task;
         private final CountDownLatch latch;
         private final AtomicBoolean success;
+        private final Semaphore slots;
 
-        public Invoker(Task<?> parentTask, Task<?> task, CountDownLatch latch, AtomicBoolean success) {
+        public Invoker(Task<?> parentTask, Task<?> task, CountDownLatch latch, AtomicBoolean success, Semaphore slots) {
             this.parentTask = parentTask;
             this.task = task;
             this.latch = latch;
             this.success = success;
+            this.slots = slots;
         }
 
         @Override
@@ -292,10 +142,11 @@ public class CancellableTaskExecutor extends TaskExecutor {
             try {
                 if (task.getName() != null)
                     Thread.currentThread().setName(task.getName());
-                if (!executeTask(parentTask, task))
+                if (!executeTask(null, parentTask, task))
                     success.set(false);
             } finally {
                 Thread.currentThread().setName(oldName);
+                slots.release();
                 latch.countDown();
             }
         }
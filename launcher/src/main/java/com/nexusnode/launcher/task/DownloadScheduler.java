@@ -0,0 +1,250 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.task;
+
+import com.nexusnode.launcher.util.Logging;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Schedules download jobs on a bounded set of threads.
+ *
+ * At most {@link #getMaxConcurrency()} jobs run at the same time. Each host additionally has its own limit,
+ * which is halved whenever the host answers 429 or 5xx and grows by one after a window of successful downloads,
+ * up to {@link #getMaxPerHost()}. Waiting jobs are started in the order of their {@link Priority},
+ * then in the order they were submitted.
+ *
+ * @author bluebird6900
+ */
+public final class DownloadScheduler {
+
+    public enum Priority {
+        /**
+         * Small metadata required before anything else can be scheduled, such as version json and asset index.
+         */
+        HIGH,
+        /**
+         * Game jars and libraries.
+         */
+        NORMAL,
+        /**
+         * Asset objects.
+         */
+        LOW
+    }
+
+    private final int maxConcurrency;
+    private final int maxPerHost;
+    private final int initialPerHost;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, HostState> hosts = new HashMap<>();
+    private long sequence = 0;
+    private int running = 0;
+
+    public DownloadScheduler(int maxConcurrency, int maxPerHost) {
+        if (maxConcurrency <= 0 || maxPerHost <= 0)
+            throw new IllegalArgumentException("Concurrency limits must be positive");
+
+        this.maxConcurrency = maxConcurrency;
+        this.maxPerHost = maxPerHost;
+        this.initialPerHost = Math.max(1, maxPerHost / 2);
+
+        AtomicInteger counter = new AtomicInteger(1);
+        this.pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Download-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * @param host the host the jobs download from, null if unknown.
+     * @param priority the priority of the jobs
+     * @return an executor that submits jobs to this scheduler.
+     */
+    public Executor executor(String host, Priority priority) {
+        String key = host == null ? "" : host;
+        return command -> submit(key, priority, command);
+    }
+
+    /**
+     * Report that a download from the host succeeded, allowing the host limit to grow.
+     */
+    public void reportSuccess(String host) {
+        synchronized (this) {
+            HostState state = hosts.get(host);
+            if (state == null)
+                return;
+
+            if (++state.successes >= state.limit && state.limit < maxPerHost) {
+                state.limit++;
+                state.successes = 0;
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Report that the host is overloaded (429 or 5xx), halving the number of concurrent downloads from it.
+     */
+    public synchronized void reportThrottled(String host) {
+        HostState state = hosts.get(host);
+        if (state == null)
+            return;
+
+        state.limit = Math.max(1, state.limit / 2);
+        state.successes = 0;
+        Logging.LOG.log(Level.FINE, "Host " + host + " is throttling downloads, limit reduced to " + state.limit);
+    }
+
+    private void submit(String host, Priority priority, Runnable command) {
+        if (pool.isShutdown())
+            throw new RejectedExecutionException("Download scheduler has been shut down");
+
+        synchronized (this) {
+            hosts.computeIfAbsent(host, key -> new HostState(initialPerHost))
+                    .pending.add(new Job(host, priority, sequence++, command));
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                if (running >= maxConcurrency)
+                    return;
+
+                job = null;
+                for (HostState state : hosts.values()) {
+                    if (state.running >= state.limit)
+                        continue;
+                    Job head = state.pending.peek();
+                    if (head != null && (job == null || head.compareTo(job) < 0))
+                        job = head;
+                }
+                if (job == null)
+                    return;
+
+                HostState state = hosts.get(job.host);
+                state.pending.poll();
+                state.running++;
+                running++;
+            }
+
+            try {
+                pool.execute(job);
+            } catch (RejectedExecutionException e) {
+                finished(job.host);
+                throw e;
+            }
+        }
+    }
+
+    private void finished(String host) {
+        synchronized (this) {
+            running--;
+            HostState state = hosts.get(host);
+            state.running--;
+            if (state.running == 0 && state.pending.isEmpty() && state.limit == initialPerHost)
+                hosts.remove(host);
+        }
+        dispatch();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class HostState {
+        private final PriorityQueue<Job> pending = new PriorityQueue<>();
+        private int limit;
+        private int running = 0;
+        private int successes = 0;
+
+        HostState(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    private final class Job implements Runnable, Comparable<Job> {
+        private final String host;
+        private final Priority priority;
+        private final long sequence;
+        private final Runnable command;
+
+        Job(String host, Priority priority, long sequence, Runnable command) {
+            this.host = host;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                command.run();
+            } finally {
+                finished(host);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static volatile DownloadScheduler instance;
+
+    public static DownloadScheduler getInstance() {
+        if (instance == null) {
+            synchronized (DownloadScheduler.class) {
+                if (instance == null) {
+                    int threads = Math.min(Runtime.getRuntime().availableProcessors() * 4, 64);
+                    instance = new DownloadScheduler(threads, 16);
+                }
+            }
+        }
+        return instance;
+    }
+
+    static synchronized void shutdownInstance() {
+        if (instance != null)
+            instance.shutdown();
+    }
+}
@@ -20,9 +20,13 @@ package com.nexusnode.launcher.task;
 import com.nexusnode.launcher.event.Event;
 import com.nexusnode.launcher.event.EventBus;
 import com.nexusnode.launcher.util.CacheRepository;
+import com.nexusnode.launcher.util.DigestUtils;
 import com.nexusnode.launcher.util.Logging;
 import com.nexusnode.launcher.util.ToStringBuilder;
+import com.nexusnode.launcher.util.gson.JsonUtils;
 import com.nexusnode.launcher.util.io.*;
+import okhttp3.Request;
+import okhttp3.Response;
 
 import java.io.File;
 import java.io.IOException;
@@ -31,12 +35,21 @@ import java.io.RandomAccessFile;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import static java.util.Objects.requireNonNull;
@@ -92,6 +105,10 @@ public class FileDownloadTask extends Task<Void> {
     private CacheRepository repository = CacheRepository.getInstance();
     private RandomAccessFile rFile;
     private InputStream stream;
+    private Response response;
+    private volatile boolean segmented = true;
+    private final String host;
+    private DownloadScheduler.Priority priority;
     private final ArrayList<IntegrityCheckHandler> integrityCheckHandlers = new ArrayList<>();
 
     /**
@@ -155,11 +172,12 @@ public class FileDownloadTask extends Task<Void> {
         this.file = file;
         this.integrityCheck = integrityCheck;
         this.retry = retry;
+        this.host = urls.get(0).getHost();
 
         this.addIntegrityCheckHandler(ZIP_INTEGRITY_CHECK_HANDLER);
 
         setName(file.getName());
-        setExecutor(Schedulers.io());
+        setPriority(DownloadScheduler.Priority.NORMAL);
     }
 
     private void closeFiles() {
@@ -179,6 +197,10 @@ public class FileDownloadTask extends Task<Void> {
                 Logging.LOG.log(Level.WARNING, "Failed to close stream", e);
             }
         stream = null;
+
+        if (response != null)
+            response.close();
+        response = null;
     }
 
     public File getFile() {
@@ -200,10 +222,227 @@ public class FileDownloadTask extends Task<Void> {
         return this;
     }
 
+    /**
+     * Decides when this download starts relative to other downloads waiting in {@link DownloadScheduler}.
+     *
+     * @param priority the priority of this download
+     * @return this task
+     */
+    public FileDownloadTask setPriority(DownloadScheduler.Priority priority) {
+        this.priority = priority;
+        setExecutor(DownloadScheduler.getInstance().executor(host, priority));
+        return this;
+    }
+
+    /**
+     * Enables or disables ranged downloads.
+     * When enabled, files larger than {@link #SEGMENTED_THRESHOLD} served with {@code Accept-Ranges: bytes}
+     * are fetched as several byte ranges in parallel, and the completed ranges survive retries and restarts.
+     *
+     * @param segmented true to allow ranged downloads, true by default.
+     * @return this task
+     */
+    public FileDownloadTask setSegmented(boolean segmented) {
+        this.segmented = segmented;
+        return this;
+    }
+
     public void addIntegrityCheckHandler(IntegrityCheckHandler handler) {
         integrityCheckHandlers.add(Objects.requireNonNull(handler));
     }
 
+    private boolean isSegmentable(Response response, long contentLength) {
+        return segmented && contentLength >= SEGMENTED_THRESHOLD
+                && "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+    }
+
+    private Path getPartFile() {
+        return file.toPath().resolveSibling(file.getName() + ".part");
+    }
+
+    private Path getSegmentsFile() {
+        return file.toPath().resolveSibling(file.getName() + ".part.json");
+    }
+
+    /**
+     * Downloads the resource of {@code response} as byte ranges into {@code <file>.part}.
+     * Completed segments are recorded in {@code <file>.part.json}, so that a later call,
+     * even from another launcher session, only fetches the missing ones.
+     *
+     * @param response the response whose headers describe the remote file, its body will not be read.
+     * @param contentLength the length of the remote file.
+     * @return the completed partial file, or null if this task is cancelled.
+     * @throws IOException if any segment fails, the partial file is kept for resuming.
+     */
+    private Path downloadSegmented(Response response, long contentLength) throws IOException, InterruptedException {
+        URL url = response.request().url().url();
+        String eTag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        response.close();
+
+        Path part = getPartFile();
+        Path segmentsFile = getSegmentsFile();
+
+        SegmentState state = null;
+        if (Files.isRegularFile(part) && Files.isRegularFile(segmentsFile)) {
+            try {
+                state = JsonUtils.fromMaybeMalformedJson(FileUtils.readText(segmentsFile), SegmentState.class);
+            } catch (IOException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to read download segments " + segmentsFile, e);
+            }
+            if (state != null && !state.matches(url, contentLength, eTag, lastModified)) {
+                Logging.LOG.log(Level.FINER, "Remote file " + url + " changed, discarding partial file " + part);
+                state = null;
+            }
+        }
+        if (state == null) {
+            Files.deleteIfExists(part);
+            state = new SegmentState(url.toString(), contentLength, eTag, lastModified, SEGMENT_SIZE);
+        }
+
+        Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < state.getSegmentCount(); i++)
+            if (!state.isCompleted(i))
+                pending.add(i);
+
+        AtomicLong downloaded = new AtomicLong(contentLength - state.getRemainingBytes());
+        Logging.LOG.log(Level.FINER, "Downloading " + url + " in " + pending.size() + " segments, " + downloaded.get() + " bytes already present");
+
+        rFile = new RandomAccessFile(part.toFile(), "rw");
+        rFile.setLength(contentLength);
+        FileChannel channel = rFile.getChannel();
+
+        // Extra connections are scheduled like any other download from this host, so they count against its limit.
+        // This thread downloads segments as well, and connections not started by the time it runs out of segments
+        // are cancelled, so a host limit of one cannot leave this task waiting for itself.
+        // Each connection is claimed exactly once, either by its worker starting or by this thread cancelling it,
+        // so every connection that started is awaited before the partial file is closed.
+        int connections = Math.min(MAX_SEGMENT_CONNECTIONS, pending.size());
+        Executor executor = DownloadScheduler.getInstance().executor(host, priority);
+        List<FutureTask<Void>> workers = new ArrayList<>(connections - 1);
+        List<AtomicBoolean> claims = new ArrayList<>(connections - 1);
+        SegmentState finalState = state;
+        for (int i = 1; i < connections; i++) {
+            AtomicBoolean claimed = new AtomicBoolean(false);
+            FutureTask<Void> worker = new FutureTask<>(() -> {
+                if (claimed.compareAndSet(false, true))
+                    downloadSegmentsOrStop(url, eTag, finalState, channel, pending, downloaded, segmentsFile);
+                return null;
+            });
+            workers.add(worker);
+            claims.add(claimed);
+            executor.execute(worker);
+        }
+
+        IOException exception = null;
+        try {
+            try {
+                downloadSegmentsOrStop(url, eTag, state, channel, pending, downloaded, segmentsFile);
+            } catch (IOException e) {
+                exception = e;
+            }
+
+            for (int i = 0; i < workers.size(); i++) {
+                FutureTask<Void> worker = workers.get(i);
+                if (claims.get(i).compareAndSet(false, true)) {
+                    worker.cancel(false); // not started yet, and will do nothing if it starts now
+                    continue;
+                }
+                try {
+                    worker.get();
+                } catch (CancellationException ignored) {
+                } catch (ExecutionException e) {
+                    if (exception == null)
+                        exception = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            pending.clear();
+            workers.forEach(worker -> worker.cancel(true));
+            throw e;
+        } finally {
+            state.save(segmentsFile);
+            closeFiles();
+        }
+
+        if (exception != null)
+            throw exception;
+
+        if (isCancelled())
+            return null;
+
+        if (finalState.getRemainingBytes() != 0)
+            throw new IOException("Segmented download of " + url + " is incomplete");
+
+        Files.deleteIfExists(segmentsFile);
+        return part;
+    }
+
+    private void downloadSegmentsOrStop(URL url, String eTag, SegmentState state, FileChannel channel, Queue<Integer> pending, AtomicLong downloaded, Path segmentsFile) throws IOException {
+        try {
+            downloadSegments(url, eTag, state, channel, pending, downloaded, segmentsFile);
+        } catch (IOException e) {
+            // Stop other connections after their current segment, so it is still recorded.
+            pending.clear();
+            throw e;
+        }
+    }
+
+    private void downloadSegments(URL url, String eTag, SegmentState state, FileChannel channel, Queue<Integer> pending, AtomicLong downloaded, Path segmentsFile) throws IOException {
+        byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+        Integer segment;
+        while ((segment = pending.poll()) != null) {
+            if (isCancelled())
+                return;
+
+            long start = state.getSegmentStart(segment);
+            long end = state.getSegmentEnd(segment);
+
+            Request.Builder request = HttpTransport.newRequest(url)
+                    .header("Accept-Encoding", "identity")
+                    .header("Range", "bytes=" + start + "-" + (end - 1));
+            if (eTag != null)
+                request.header("If-Range", eTag);
+
+            try (Response response = HttpTransport.getInstance().execute(request.build())) {
+                if (response.code() == HttpURLConnection.HTTP_OK) {
+                    // The server ignored our range request, or the resource has changed since.
+                    segmented = false;
+                    pending.clear();
+                    state.abandon(segmentsFile);
+                    throw new IOException("Server does not honor range requests for " + url);
+                } else if (response.code() != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new ResponseCodeException(url, response.code());
+                }
+
+                long position = start;
+                try (InputStream input = response.body().byteStream()) {
+                    while (position < end) {
+                        if (isCancelled())
+                            return;
+
+                        int read = input.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                        if (read == -1)
+                            break;
+
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                        while (byteBuffer.hasRemaining())
+                            position += channel.write(byteBuffer, position);
+
+                        updateProgress(downloaded.addAndGet(read) / (double) state.getLength());
+                        updateDownloadSpeed(read);
+                    }
+                }
+
+                if (position != end)
+                    throw new IOException("Unexpected segment size: " + (position - start) + ", expected: " + (end - start));
+
+                channel.force(false);
+                state.markCompleted(segment, segmentsFile);
+            }
+        }
+    }
+
     @Override
     public void execute() throws Exception {
         boolean checkETag;
@@ -213,7 +452,7 @@ public class FileDownloadTask extends Task<Void> {
             Optional<Path> cache = repository.checkExistentFile(candidate, integrityCheck.getAlgorithm(), integrityCheck.getChecksum());
             if (cache.isPresent()) {
                 try {
-                    FileUtils.copyFile(cache.get().toFile(), file);
+                    repository.materialize(cache.get(), file.toPath());
                     Logging.LOG.log(Level.FINER, "Successfully verified file " + file + " from " + urls.get(0));
                     return;
                 } catch (IOException e) {
@@ -240,80 +479,102 @@ public class FileDownloadTask extends Task<Void> {
                 try {
                     updateProgress(0);
 
-                    HttpURLConnection con = NetworkUtils.createConnection(url);
-                    if (checkETag) repository.injectConnection(con);
-                    con = NetworkUtils.resolveConnection(con);
+                    Request request = HttpTransport.newRequest(url)
+                            .header("Accept-Encoding", "identity")
+                            .build();
+                    if (checkETag) request = repository.injectRequest(request);
+                    Response response = HttpTransport.getInstance().execute(request);
+                    this.response = response;
 
-                    if (con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
                         // Handle cache
                         try {
-                            Path cache = repository.getCachedRemoteFile(con);
-                            FileUtils.copyFile(cache.toFile(), file);
+                            Path cache = repository.getCachedRemoteFile(response);
+                            repository.materialize(cache, file.toPath());
                             return;
                         } catch (IOException e) {
                             Logging.LOG.log(Level.WARNING, "Unable to use cached file, redownload it", e);
-                            repository.removeRemoteEntry(con);
+                            repository.removeRemoteEntry(response);
                             // Now we must reconnect the server since 304 may result in empty content,
                             // if we want to redownload the file, we must reconnect the server without etag settings.
                             retryTime--;
                             continue;
                         }
-                    } else if (con.getResponseCode() / 100 == 4) {
+                    } else if (response.code() == 429 || response.code() / 100 == 5) {
+                        // Reported against the host this task is scheduled under, even when a mirror throttles.
+                        DownloadScheduler.getInstance().reportThrottled(host);
+                        throw new ResponseCodeException(url, response.code());
+                    } else if (response.code() / 100 == 4) {
                         break; // we will not try this URL again
-                    } else if (con.getResponseCode() / 100 != 2) {
-                        throw new ResponseCodeException(url, con.getResponseCode());
+                    } else if (response.code() / 100 != 2) {
+                        throw new ResponseCodeException(url, response.code());
                     }
 
-                    int contentLength = con.getContentLength();
+                    long contentLength = response.body().contentLength();
                     if (contentLength < 0)
                         throw new IOException("The content length is invalid.");
 
                     if (!FileUtils.makeDirectory(file.getAbsoluteFile().getParentFile()))
                         throw new IOException("Could not make directory " + file.getAbsoluteFile().getParent());
 
-                    temp = Files.createTempFile(null, null);
-                    rFile = new RandomAccessFile(temp.toFile(), "rw");
-
                     MessageDigest digest = integrityCheck == null ? null : integrityCheck.createDigest();
 
-                    stream = con.getInputStream();
-                    int lastDownloaded = 0, downloaded = 0;
-                    byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
-                    while (true) {
-                        if (isCancelled()) {
-                            break;
-                        }
-
-                        int read = stream.read(buffer);
-                        if (read == -1)
-                            break;
+                    if (isSegmentable(response, contentLength)) {
+                        // The partial file is kept on failure so that retries resume from the completed ranges.
+                        // temp is only assigned once every segment has been written.
+                        Path part = downloadSegmented(response, contentLength);
+                        if (part == null)
+                            break download;
 
+                        temp = part;
                         if (digest != null) {
-                            digest.update(buffer, 0, read);
+                            try (InputStream input = Files.newInputStream(temp)) {
+                                DigestUtils.updateDigest(digest, input);
+                            }
+                        }
+                    } else {
+                        temp = Files.createTempFile(null, null);
+                        rFile = new RandomAccessFile(temp.toFile(), "rw");
+
+                        stream = response.body().byteStream();
+                        long lastDownloaded = 0, downloaded = 0;
+                        byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+                        while (true) {
+                            if (isCancelled()) {
+                                break;
+                            }
+
+                            int read = stream.read(buffer);
+                            if (read == -1)
+                                break;
+
+                            if (digest != null) {
+                                digest.update(buffer, 0, read);
+                            }
+
+                            // Write buffer to file.
+                            rFile.write(buffer, 0, read);
+                            downloaded += read;
+
+                            // Update progress information per second
+                            updateProgress(1.0 * downloaded / contentLength);
+
+                            updateDownloadSpeed((int) (downloaded - lastDownloaded));
+                            lastDownloaded = downloaded;
                         }
 
-                        // Write buffer to file.
-                        rFile.write(buffer, 0, read);
-                        downloaded += read;
-
-                        // Update progress information per second
-                        updateProgress(downloaded, contentLength);
-
-                        updateDownloadSpeed(downloaded - lastDownloaded);
-                        lastDownloaded = downloaded;
-                    }
-
-                    updateDownloadSpeed(downloaded - lastDownloaded);
+                        updateDownloadSpeed((int) (downloaded - lastDownloaded));
 
-                    closeFiles();
+                        closeFiles();
 
-                    if (downloaded != contentLength)
-                        throw new IOException("Unexpected file size: " + downloaded + ", expected: " + contentLength);
+                        if (downloaded != contentLength)
+                            throw new IOException("Unexpected file size: " + downloaded + ", expected: " + contentLength);
 
-                    // Restore temp file to original name.
-                    if (isCancelled()) {
-                        temp.toFile().delete();
-                        break download;
+                        // Restore temp file to original name.
+                        if (isCancelled()) {
+                            temp.toFile().delete();
+                            break download;
+                        }
                     }
 
                     for (IntegrityCheckHandler handler : integrityCheckHandlers) {
@@ -343,9 +604,10 @@ public class FileDownloadTask extends Task<Void> {
                     }
 
                     if (checkETag) {
-                        repository.cacheRemoteFile(file.toPath(), con);
+                        repository.cacheRemoteFile(file.toPath(), response);
                     }
 
+                    DownloadScheduler.getInstance().reportSuccess(host);
                     return;
                 } catch (IOException e) {
                     if (temp != null)
@@ -363,6 +625,115 @@ public class FileDownloadTask extends Task<Void> {
             throw new DownloadException(failedURL, exception);
     }
 
+    /**
+     * Files smaller than this are always downloaded over a single connection.
+     */
+    public static final long SEGMENTED_THRESHOLD = 4 * 1024 * 1024;
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+    private static final int MAX_SEGMENT_CONNECTIONS = 4;
+    private static final long SEGMENTS_SAVE_INTERVAL = 1000;
+
+    /**
+     * The sidecar of a segmented download, recording which segments of {@code <file>.part} have been written.
+     */
+    private static final class SegmentState {
+        private final String url;
+        private final long length;
+        private final String eTag;
+        private final String lastModified;
+        private final long segmentSize;
+        private final Set<Integer> completed;
+        private transient boolean dirty;
+        private transient boolean abandoned;
+        private transient long savedAt;
+
+        /**
+         * For Gson.
+         */
+        public SegmentState() {
+            this(null, 0, null, null, SEGMENT_SIZE);
+        }
+
+        public SegmentState(String url, long length, String eTag, String lastModified, long segmentSize) {
+            this.url = url;
+            this.length = length;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.segmentSize = segmentSize;
+            this.completed = new TreeSet<>();
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public int getSegmentCount() {
+            return (int) ((length + segmentSize - 1) / segmentSize);
+        }
+
+        public long getSegmentStart(int segment) {
+            return segment * segmentSize;
+        }
+
+        public long getSegmentEnd(int segment) {
+            return Math.min(length, (segment + 1) * segmentSize);
+        }
+
+        public synchronized boolean isCompleted(int segment) {
+            return completed.contains(segment);
+        }
+
+        public synchronized long getRemainingBytes() {
+            long remaining = length;
+            for (int segment : completed)
+                remaining -= getSegmentEnd(segment) - getSegmentStart(segment);
+            return remaining;
+        }
+
+        /**
+         * The partial file can only be resumed if it belongs to the same version of the same remote file.
+         */
+        public boolean matches(URL url, long length, String eTag, String lastModified) {
+            return this.length == length && segmentSize > 0 && completed != null
+                    && Objects.equals(this.url, url.toString())
+                    && Objects.equals(this.eTag, eTag)
+                    && Objects.equals(this.lastModified, lastModified);
+        }
+
+        /**
+         * Records the segment as completed, writing the sidecar at most once per {@link #SEGMENTS_SAVE_INTERVAL}.
+         */
+        public synchronized void markCompleted(int segment, Path segmentsFile) {
+            completed.add(segment);
+            dirty = true;
+            if (System.currentTimeMillis() - savedAt >= SEGMENTS_SAVE_INTERVAL)
+                save(segmentsFile);
+        }
+
+        /**
+         * Writes the completed segments not written yet, unless the partial file has been abandoned.
+         */
+        public synchronized void save(Path segmentsFile) {
+            if (!dirty || abandoned)
+                return;
+            try {
+                FileUtils.writeText(segmentsFile.toFile(), JsonUtils.GSON.toJson(this));
+                dirty = false;
+                savedAt = System.currentTimeMillis();
+            } catch (IOException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to save download segments " + segmentsFile, e);
+            }
+        }
+
+        /**
+         * Discards the sidecar for good, segments completed later by other connections are no longer recorded.
+         */
+        public synchronized void abandon(Path segmentsFile) throws IOException {
+            abandoned = true;
+            Files.deleteIfExists(segmentsFile);
+        }
+    }
+
     private static final Timer timer = new Timer("DownloadSpeedRecorder", true);
     private static final AtomicInteger downloadSpeed = new AtomicInteger(0);
     public static final EventBus speedEvent = new EventBus();
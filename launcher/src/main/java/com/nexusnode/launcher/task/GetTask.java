@@ -20,8 +20,11 @@ package com.nexusnode.launcher.task;
 import com.nexusnode.launcher.util.CacheRepository;
 import com.nexusnode.launcher.util.Logging;
 import com.nexusnode.launcher.util.io.FileUtils;
+import com.nexusnode.launcher.util.io.HttpTransport;
 import com.nexusnode.launcher.util.io.IOUtils;
-import com.nexusnode.launcher.util.io.NetworkUtils;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -46,6 +49,7 @@ public final class GetTask extends Task<String> {
     private final List<URL> urls;
     private final Charset charset;
     private final int retry;
+    private final String host;
     private CacheRepository repository = CacheRepository.getInstance();
 
     public GetTask(URL url) {
@@ -68,9 +72,10 @@ public final class GetTask extends Task<String> {
         this.urls = new ArrayList<>(urls);
         this.charset = charset;
         this.retry = retry;
+        this.host = urls.get(0).getHost();
 
         setName(urls.get(0).toString());
-        setExecutor(Schedulers.io());
+        setExecutor(DownloadScheduler.getInstance().executor(host, DownloadScheduler.Priority.HIGH));
     }
 
     public GetTask setCacheRepository(CacheRepository repository) {
@@ -89,37 +94,42 @@ public final class GetTask extends Task<String> {
                 break;
             }
 
-            try {
+            Request request = HttpTransport.newRequest(url).build();
+            if (checkETag) request = repository.injectRequest(request);
+
+            try (Response response = HttpTransport.getInstance().execute(request)) {
                 updateProgress(0);
-                HttpURLConnection conn = NetworkUtils.createConnection(url);
-                if (checkETag) repository.injectConnection(conn);
-                conn = NetworkUtils.resolveConnection(conn);
 
-                if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
                     // Handle cache
                     try {
-                        Path cache = repository.getCachedRemoteFile(conn);
+                        Path cache = repository.getCachedRemoteFile(response);
                         setResult(FileUtils.readText(cache));
                         return;
                     } catch (IOException e) {
                         Logging.LOG.log(Level.WARNING, "Unable to use cached file, redownload it", e);
-                        repository.removeRemoteEntry(conn);
+                        repository.removeRemoteEntry(response);
                         continue;
                     }
-                } else if (conn.getResponseCode() / 100 != 2) {
-                    throw new IOException("Server error, response code: " + conn.getResponseCode());
+                } else if (response.code() / 100 != 2) {
+                    // Reported against the host this task is scheduled under, even when a mirror throttles.
+                    if (response.code() == 429 || response.code() / 100 == 5)
+                        DownloadScheduler.getInstance().reportThrottled(host);
+                    throw new IOException("Server error, response code: " + response.code());
                 }
 
-                InputStream input = conn.getInputStream();
+                ResponseBody body = response.body();
+                InputStream input = body.byteStream();
                 ByteArrayOutputStream baos = new ByteArrayOutputStream();
                 byte[] buf = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
-                int size = conn.getContentLength(), read = 0, len;
+                long size = body.contentLength();
+                int read = 0, len;
                 while ((len = input.read(buf)) != -1) {
                     baos.write(buf, 0, len);
                     read += len;
 
                     if (size >= 0)
-                        updateProgress(read, size);
+                        updateProgress(1.0 * read / size);
 
                     if (Thread.currentThread().isInterrupted())
                         return;
@@ -132,8 +142,9 @@ public final class GetTask extends Task<String> {
                 setResult(result);
 
                 if (checkETag) {
-                    repository.cacheText(result, conn);
+                    repository.cacheText(result, response);
                 }
+                DownloadScheduler.getInstance().reportSuccess(host);
                 return;
             } catch (IOException ex) {
                 failedURL = url;
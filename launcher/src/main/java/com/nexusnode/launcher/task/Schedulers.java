@@ -78,6 +78,8 @@ public final class Schedulers {
 
         if (IO_EXECUTOR != null)
             IO_EXECUTOR.shutdown();
+
+        DownloadScheduler.shutdownInstance();
     }
 
     public static Future<?> schedule(Executor executor, Runnable command) {
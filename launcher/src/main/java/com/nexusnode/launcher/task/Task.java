@@ -376,19 +376,34 @@ public abstract class Task<T> {
         return executor;
     }
 
+    /**
+     * Runs this task on virtual threads if supported by the Java runtime,
+     * otherwise falls back to a thread per task.
+     * Both run the task graph alike, a failing subtask does not cancel its siblings with either.
+     *
+     * @see VirtualThreadTaskExecutor
+     * @see CancellableTaskExecutor
+     */
+    private TaskExecutor newCancellableExecutor() {
+        if (VirtualThreadTaskExecutor.isSupported())
+            return new VirtualThreadTaskExecutor(this);
+        else
+            return new CancellableTaskExecutor(this);
+    }
+
     public final TaskExecutor cancellableExecutor() {
-        return new CancellableTaskExecutor(this);
+        return newCancellableExecutor();
     }
 
     public final TaskExecutor cancellableExecutor(boolean start) {
-        TaskExecutor executor = new CancellableTaskExecutor(this);
+        TaskExecutor executor = newCancellableExecutor();
         if (start)
             executor.start();
         return executor;
     }
 
     public final TaskExecutor cancellableExecutor(TaskListener taskListener) {
-        TaskExecutor executor = new CancellableTaskExecutor(this);
+        TaskExecutor executor = newCancellableExecutor();
         executor.addTaskListener(taskListener);
         return executor;
     }
@@ -0,0 +1,224 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.task;
+
+import com.nexusnode.launcher.util.Logging;
+import com.nexusnode.launcher.util.function.ExceptionalRunnable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+
+/**
+ * Runs a task, its dependents and its dependencies, leaving how sibling tasks are run concurrently to subclasses.
+ *
+ * @param <S> the scope sibling tasks run in, checked for cancellation by the tasks in it
+ * @author bluebird6900
+ */
+abstract class TaskGraphExecutor<S> extends TaskExecutor {
+
+    TaskGraphExecutor(Task<?> task) {
+        super(task);
+    }
+
+    /**
+     * @return true if the tasks running in {@code scope} should stop.
+     */
+    protected abstract boolean isCancelled(S scope);
+
+    /**
+     * Runs the tasks concurrently and waits for all of them.
+     *
+     * @param scope the scope of the task waiting for {@code tasks}
+     * @return true if all tasks succeeded.
+     */
+    protected abstract boolean executeTasks(S scope, Task<?> parentTask, Collection<? extends Task<?>> tasks) throws InterruptedException;
+
+    /**
+     * Runs a step of the task on {@link Task#getExecutor()} and waits for it.
+     */
+    protected void runOn(Task<?> task, ExceptionalRunnable<?> runnable) throws Exception {
+        try {
+            Schedulers.schedule(task.getExecutor(), wrap(runnable)).get();
+        } catch (ExecutionException e) {
+            rethrow(e);
+        }
+    }
+
+    private synchronized void updateStageProperties(String stage, Map<String, Object> taskProperties) {
+        stageProperties.putIfAbsent(stage, new HashMap<>());
+        Map<String, Object> prop = stageProperties.get(stage);
+        for (Map.Entry<String, Object> entry : taskProperties.entrySet()) {
+            if (entry.getValue() instanceof UnaryOperator) {
+                prop.put(entry.getKey(), ((UnaryOperator) entry.getValue()).apply(prop.get(entry.getKey())));
+            } else {
+                prop.put(entry.getKey(), entry.getValue());
+            }
+        }
+        taskListeners.forEach(taskListener -> taskListener.onPropertiesUpdate(stageProperties));
+    }
+
+    protected final boolean executeTask(S scope, Task<?> parentTask, Task<?> task) {
+        task.setCancelled(() -> isCancelled(scope));
+
+        if (isCancelled(scope)) {
+            task.setState(Task.TaskState.FAILED);
+            task.setException(new CancellationException());
+            return false;
+        }
+
+        task.setState(Task.TaskState.READY);
+        if (parentTask != null && task.getStage() == null)
+            task.setStage(parentTask.getStage());
+
+        if (task.getSignificance().shouldLog())
+            Logging.LOG.log(Level.FINE, "Executing task: " + task.getName());
+
+        taskListeners.forEach(it -> it.onReady(task));
+
+        boolean flag = false;
+
+        try {
+            if (task.doPreExecute()) {
+                runOn(task, task::preExecute);
+            }
+
+            Collection<? extends Task<?>> dependents = task.getDependents();
+            boolean doDependentsSucceeded = executeTasks(scope, task, dependents);
+            Exception dependentsException = findException(dependents);
+            if (!doDependentsSucceeded && task.isRelyingOnDependents() || isCancelled(scope)) {
+                task.setException(dependentsException);
+                throw new ExecutionException(dependentsException);
+            }
+
+            if (doDependentsSucceeded)
+                task.setDependentsSucceeded();
+
+            try {
+                runOn(task, () -> {
+                    task.setState(Task.TaskState.RUNNING);
+                    taskListeners.forEach(it -> it.onRunning(task));
+                    task.execute();
+                });
+            } finally {
+                task.setState(Task.TaskState.EXECUTED);
+            }
+
+            if (task.properties != null) {
+                updateStageProperties(task.getStage(), task.properties);
+            }
+
+            Collection<? extends Task<?>> dependencies = task.getDependencies();
+            boolean doDependenciesSucceeded = executeTasks(scope, task, dependencies);
+            Exception dependenciesException = findException(dependencies);
+
+            if (doDependenciesSucceeded)
+                task.setDependenciesSucceeded();
+
+            if (task.doPostExecute()) {
+                runOn(task, task::postExecute);
+            }
+
+            if (!doDependenciesSucceeded && task.isRelyingOnDependencies()) {
+                Logging.LOG.severe("Subtasks failed for " + task.getName());
+                task.setException(dependenciesException);
+                throw new ExecutionException(dependenciesException);
+            }
+
+            flag = true;
+            if (task.getSignificance().shouldLog()) {
+                Logging.LOG.log(Level.FINER, "Task finished: " + task.getName());
+            }
+
+            if (task.properties != null) {
+                updateStageProperties(task.getStage(), task.properties);
+            }
+
+            task.onDone().fireEvent(new TaskEvent(this, task, false));
+            taskListeners.forEach(it -> it.onFinished(task));
+        } catch (RejectedExecutionException e) {
+            Logging.LOG.log(Level.SEVERE, "Task rejected: " + task.getName(), e);
+        } catch (Exception throwable) {
+            Throwable resolved = resolveException(throwable);
+            if (resolved instanceof Exception) {
+                Exception e = (Exception) resolved;
+                task.setException(e);
+                if (e instanceof InterruptedException || e instanceof CancellationException) {
+                    if (task.getSignificance().shouldLog()) {
+                        Logging.LOG.log(Level.FINE, "Task aborted: " + task.getName());
+                    }
+                } else {
+                    exception = e;
+                    if (task.getSignificance().shouldLog()) {
+                        Logging.LOG.log(Level.FINE, "Task failed: " + task.getName(), e);
+                    }
+                }
+                task.onDone().fireEvent(new TaskEvent(this, task, true));
+                taskListeners.forEach(it -> it.onFailed(task, e));
+            } else if (resolved instanceof Error) {
+                throw (Error) resolved;
+            }
+        }
+        task.setState(flag ? Task.TaskState.SUCCEEDED : Task.TaskState.FAILED);
+        return flag;
+    }
+
+    private static Exception findException(Collection<? extends Task<?>> tasks) {
+        return tasks.stream().map(Task::getException)
+                .filter(Objects::nonNull)
+                .filter(x -> !(x instanceof CancellationException))
+                .filter(x -> !(x instanceof InterruptedException))
+                .findAny().orElse(null);
+    }
+
+    private static Throwable resolveException(Throwable e) {
+        if (e instanceof ExecutionException || e instanceof CompletionException)
+            return resolveException(e.getCause());
+        else
+            return e;
+    }
+
+    static void rethrow(Throwable e) {
+        if (e == null)
+            return;
+        if (e instanceof ExecutionException || e instanceof CompletionException) { // including UncheckedException and UncheckedThrowable
+            rethrow(e.getCause());
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else {
+            throw new CompletionException(e);
+        }
+    }
+
+    static Runnable wrap(ExceptionalRunnable<?> runnable) {
+        return () -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                rethrow(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.task;
+
+import com.nexusnode.launcher.util.function.ExceptionalRunnable;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs every task on its own virtual thread.
+ *
+ * Blocking on dependents, dependencies and {@link Task#getExecutor()} only parks a virtual thread,
+ * so task graphs with tens of thousands of tasks do not exhaust platform threads.
+ * Cancellation is structured: cancelling the executor cancels every running task and the tasks they are waiting for.
+ * Otherwise tasks run and fail exactly as with {@link CancellableTaskExecutor}, which is used where virtual threads are not available.
+ *
+ * Virtual threads are only available since Java 21, check {@link #isSupported()} first.
+ *
+ * @author bluebird6900
+ */
+public final class VirtualThreadTaskExecutor extends TaskGraphExecutor<VirtualThreadTaskExecutor.Scope> {
+
+    private static final ExecutorService VIRTUAL_THREADS = createVirtualThreadExecutor();
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8 to 18 do not have virtual threads, Java 19 and 20 require --enable-preview.
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    private final Scope root = new Scope(null);
+
+    public VirtualThreadTaskExecutor(Task<?> task) {
+        super(task);
+
+        if (!isSupported())
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime");
+    }
+
+    @Override
+    public TaskExecutor start() {
+        taskListeners.forEach(TaskListener::onStart);
+        root.submit(() -> {
+            boolean flag = executeTasks(root, null, Collections.singleton(firstTask));
+            taskListeners.forEach(it -> it.onStop(flag, this));
+            return flag;
+        });
+        return this;
+    }
+
+    @Override
+    public boolean test() {
+        taskListeners.forEach(TaskListener::onStart);
+        Future<Boolean> future = root.submit(() -> {
+            boolean flag = executeTasks(root, null, Collections.singleton(firstTask));
+            taskListeners.forEach(it -> it.onStop(flag, this));
+            return flag;
+        });
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException ignored) {
+        }
+        return false;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled.set(true);
+        root.cancel();
+    }
+
+    @Override
+    protected boolean isCancelled(Scope scope) {
+        return scope.isCancelled();
+    }
+
+    /**
+     * Runs the tasks concurrently in a new child scope of {@code parentScope} and waits for all of them.
+     */
+    @Override
+    protected boolean executeTasks(Scope parentScope, Task<?> parentTask, Collection<? extends Task<?>> tasks) {
+        if (tasks.isEmpty())
+            return true;
+
+        totTask.addAndGet(tasks.size());
+        Scope scope = parentScope.fork();
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>(tasks.size());
+            for (Task<?> task : tasks) {
+                if (scope.isCancelled())
+                    return false;
+                futures.add(scope.submit(() -> invoke(scope, parentTask, task)));
+            }
+
+            boolean success = true;
+            for (Future<Boolean> future : futures) {
+                try {
+                    if (!future.get())
+                        success = false;
+                } catch (ExecutionException | CancellationException e) {
+                    success = false;
+                }
+            }
+            return success && !scope.isCancelled();
+        } catch (InterruptedException e) {
+            scope.cancel();
+            return false;
+        } finally {
+            parentScope.join(scope);
+        }
+    }
+
+    private boolean invoke(Scope scope, Task<?> parentTask, Task<?> task) {
+        Thread thread = Thread.currentThread();
+        String oldName = thread.getName();
+        try {
+            if (task.getName() != null)
+                thread.setName(task.getName());
+            return executeTask(scope, parentTask, task);
+        } finally {
+            thread.setName(oldName);
+        }
+    }
+
+    /**
+     * Tasks using the default scheduler run directly on their virtual thread,
+     * others, such as downloads and JavaFX tasks, are handed over to their executor.
+     */
+    @Override
+    protected void runOn(Task<?> task, ExceptionalRunnable<?> runnable) throws Exception {
+        if (task.getExecutor() == Schedulers.defaultScheduler())
+            runnable.run();
+        else
+            super.runOn(task, runnable);
+    }
+
+    /**
+     * The threads running a group of sibling tasks, nested in the scope of the task waiting for them.
+     */
+    final class Scope {
+        private final Scope parent;
+        private final Set<Future<?>> futures = ConcurrentHashMap.newKeySet();
+        private final Set<Scope> children = ConcurrentHashMap.newKeySet();
+        private volatile boolean scopeCancelled = false;
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        boolean isCancelled() {
+            return scopeCancelled || cancelled.get() || parent != null && parent.isCancelled();
+        }
+
+        Scope fork() {
+            Scope child = new Scope(this);
+            children.add(child);
+            if (isCancelled())
+                child.cancel();
+            return child;
+        }
+
+        void join(Scope child) {
+            children.remove(child);
+        }
+
+        <T> Future<T> submit(Callable<T> callable) {
+            FutureTask<T> future = new FutureTask<T>(callable) {
+                @Override
+                protected void done() {
+                    futures.remove(this);
+                }
+            };
+            futures.add(future);
+            VIRTUAL_THREADS.execute(future);
+            return future;
+        }
+
+        void cancel() {
+            scopeCancelled = true;
+            for (Future<?> future : futures)
+                future.cancel(true);
+            for (Scope child : children)
+                child.cancel();
+        }
+    }
+}
@@ -108,7 +108,7 @@ public final class Controllers {
             dialog(i18n("launcher.cache_directory.invalid"));
         }
 
-        Task.runAsync(JavaVersion::initialize).start();
+        Task.runAsync(() -> JavaVersion.initialize(Metadata.HMCL_DIRECTORY.resolve("javas.json"))).start();
 
         scene = new Scene(decorator.getDecorator(), 802, 482);
         stage.setMinHeight(482);
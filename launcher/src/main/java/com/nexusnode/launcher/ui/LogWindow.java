@@ -46,6 +46,8 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +58,7 @@ import java.util.stream.IntStream;
 import static com.nexusnode.launcher.setting.ConfigHolder.config;
 import static com.nexusnode.launcher.ui.FXUtils.newImage;
 import static com.nexusnode.launcher.util.Lang.thread;
+import static com.nexusnode.launcher.util.Pair.pair;
 import static com.nexusnode.launcher.util.Logging.LOG;
 import static com.nexusnode.launcher.util.StringUtils.parseEscapeSequence;
 import static com.nexusnode.launcher.util.i18n.I18n.i18n;
@@ -95,12 +98,23 @@ public final class LogWindow extends Stage {
     }
 
     public void logLine(String line, Log4jLevel level) {
-        Log log = new Log(parseEscapeSequence(line), level);
-        logs.add(log);
-        if (levelShownMap.get(level).get())
-            impl.listView.getItems().add(log);
+        logLines(Collections.singletonList(pair(line, level)));
+    }
+
+    /**
+     * Appends the lines at once, so that the list view is updated once per batch instead of once per line.
+     */
+    public void logLines(List<? extends Map.Entry<String, Log4jLevel>> lines) {
+        List<Log> shown = new ArrayList<>(lines.size());
+        for (Map.Entry<String, Log4jLevel> line : lines) {
+            Log log = new Log(parseEscapeSequence(line.getKey()), line.getValue());
+            logs.add(log);
+            if (levelShownMap.get(log.level).get())
+                shown.add(log);
+            levelCountMap.get(log.level).setValue(levelCountMap.get(log.level).getValue() + 1);
+        }
 
-        levelCountMap.get(level).setValue(levelCountMap.get(level).getValue() + 1);
+        impl.listView.getItems().addAll(shown);
         if (!stopCheckLogCount) checkLogCount();
     }
 
@@ -122,13 +136,16 @@ public final class LogWindow extends Stage {
     }
 
     private void checkLogCount() {
+        // Shown logs are kept in order, so the removed ones are at the head of the list view.
+        List<Log> items = impl.listView.getItems();
+        int removedItems = 0;
         while (logs.size() > config().getLogLines()) {
             Log removedLog = logs.removeFirst();
-            if (!impl.listView.getItems().isEmpty() && impl.listView.getItems().get(0) == removedLog) {
-                // TODO: fix O(n)
-                impl.listView.getItems().remove(0);
-            }
+            if (removedItems < items.size() && items.get(removedItems) == removedLog)
+                removedItems++;
         }
+        if (removedItems > 0)
+            impl.listView.getItems().remove(0, removedItems);
     }
 
     private static class Log {
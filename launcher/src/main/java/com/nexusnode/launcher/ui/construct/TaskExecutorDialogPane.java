@@ -29,6 +29,7 @@ import com.nexusnode.launcher.task.TaskExecutor;
 import com.nexusnode.launcher.task.TaskListener;
 import com.nexusnode.launcher.ui.FXUtils;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -37,7 +38,7 @@ import static com.nexusnode.launcher.ui.FXUtils.runInFX;
 public class TaskExecutorDialogPane extends StackPane {
     private TaskExecutor executor;
     private Consumer<Region> onCancel;
-    private final Consumer<FileDownloadTask.SpeedEvent> speedEventHandler;
+    private final Consumer<List<FileDownloadTask.SpeedEvent>> speedEventHandler;
 
     @FXML
     private Label lblTitle;
@@ -58,9 +59,9 @@ public class TaskExecutorDialogPane extends StackPane {
             onCancel.accept(this);
         });
 
-        speedEventHandler = speedEvent -> {
+        speedEventHandler = speedEvents -> {
             String unit = "B/s";
-            double speed = speedEvent.getSpeed();
+            double speed = speedEvents.get(speedEvents.size() - 1).getSpeed();
             if (speed > 1024) {
                 speed /= 1024;
                 unit = "KB/s";
@@ -69,13 +70,9 @@ public class TaskExecutorDialogPane extends StackPane {
                 speed /= 1024;
                 unit = "MB/s";
             }
-            double finalSpeed = speed;
-            String finalUnit = unit;
-            Platform.runLater(() -> {
-                lblProgress.setText(String.format("%.1f %s", finalSpeed, finalUnit));
-            });
+            lblProgress.setText(String.format("%.1f %s", speed, unit));
         };
-        FileDownloadTask.speedEvent.channel(FileDownloadTask.SpeedEvent.class).registerWeak(speedEventHandler);
+        FileDownloadTask.speedEvent.channel(FileDownloadTask.SpeedEvent.class).registerWeakAsync(speedEventHandler, Platform::runLater);
     }
 
     public void setExecutor(TaskExecutor executor) {
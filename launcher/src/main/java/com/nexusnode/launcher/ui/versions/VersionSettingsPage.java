@@ -35,6 +35,7 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import com.nexusnode.launcher.game.GameDirectoryType;
+import com.nexusnode.launcher.game.JvmTuningProfile;
 import com.nexusnode.launcher.setting.*;
 import com.nexusnode.launcher.task.Schedulers;
 import com.nexusnode.launcher.task.Task;
@@ -86,9 +87,11 @@ public final class VersionSettingsPage extends StackPane implements DecoratorPag
     @FXML private ComponentList componentList;
     @FXML private ComponentList iconPickerItemWrapper;
     @FXML private JFXComboBox<LauncherVisibility> cboLauncherVisibility;
+    @FXML private JFXComboBox<JvmTuningProfile> cboTuningProfile;
     @FXML private JFXCheckBox chkFullscreen;
     @FXML private Label lblPhysicalMemory;
     @FXML private JFXToggleButton chkNoJVMArgs;
+    @FXML private JFXToggleButton chkClassDataSharing;
     @FXML private JFXToggleButton chkNoGameCheck;
     @FXML private JFXToggleButton chkNoJVMCheck;
     @FXML private MultiFileItem<JavaVersion> javaItem;
@@ -110,6 +113,9 @@ public final class VersionSettingsPage extends StackPane implements DecoratorPag
 
         cboLauncherVisibility.getItems().setAll(LauncherVisibility.values());
         cboLauncherVisibility.setConverter(stringConverter(e -> i18n("settings.advanced.launcher_visibility." + e.name().toLowerCase())));
+
+        cboTuningProfile.getItems().setAll(JvmTuningProfile.values());
+        cboTuningProfile.setConverter(stringConverter(e -> i18n("settings.advanced.jvm_tuning." + e.name().toLowerCase())));
     }
 
     @FXML
@@ -189,8 +195,10 @@ public final class VersionSettingsPage extends StackPane implements DecoratorPag
             FXUtils.unbindBoolean(chkNoGameCheck, lastVersionSetting.notCheckGameProperty());
             FXUtils.unbindBoolean(chkNoJVMCheck, lastVersionSetting.notCheckJVMProperty());
             FXUtils.unbindBoolean(chkNoJVMArgs, lastVersionSetting.noJVMArgsProperty());
+            FXUtils.unbindBoolean(chkClassDataSharing, lastVersionSetting.classDataSharingProperty());
             FXUtils.unbindBoolean(chkShowLogs, lastVersionSetting.showLogsProperty());
             FXUtils.unbindEnum(cboLauncherVisibility);
+            FXUtils.unbindEnum(cboTuningProfile);
 
             lastVersionSetting.usesGlobalProperty().removeListener(specificSettingsListener);
             lastVersionSetting.javaDirProperty().removeListener(javaListener);
@@ -219,8 +227,10 @@ public final class VersionSettingsPage extends StackPane implements DecoratorPag
         FXUtils.bindBoolean(chkNoGameCheck, versionSetting.notCheckGameProperty());
         FXUtils.bindBoolean(chkNoJVMCheck, versionSetting.notCheckJVMProperty());
         FXUtils.bindBoolean(chkNoJVMArgs, versionSetting.noJVMArgsProperty());
+        FXUtils.bindBoolean(chkClassDataSharing, versionSetting.classDataSharingProperty());
         FXUtils.bindBoolean(chkShowLogs, versionSetting.showLogsProperty());
         FXUtils.bindEnum(cboLauncherVisibility, versionSetting.launcherVisibilityProperty());
+        FXUtils.bindEnum(cboTuningProfile, versionSetting.tuningProfileProperty());
 
         versionSetting.usesGlobalProperty().addListener(specificSettingsListener);
         if (versionId != null)
@@ -21,10 +21,11 @@ import com.nexusnode.launcher.task.FileDownloadTask;
 import com.nexusnode.launcher.util.io.NetworkUtils;
 import org.tukaani.xz.XZInputStream;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
 
@@ -49,10 +50,16 @@ class HMCLDownloadTask extends FileDownloadTask {
                     break;
 
                 case PACK_XZ:
-                    byte[] raw = Files.readAllBytes(target);
-                    try (InputStream in = new XZInputStream(new ByteArrayInputStream(raw));
-                            JarOutputStream out = new JarOutputStream(Files.newOutputStream(target))) {
-                        Pack200.newUnpacker().unpack(in, out);
+                    // Unpack while streaming from the downloaded file, then replace it.
+                    Path unpacked = target.resolveSibling(target.getFileName() + ".unpacked");
+                    try {
+                        try (InputStream in = new XZInputStream(new BufferedInputStream(Files.newInputStream(target)));
+                                JarOutputStream out = new JarOutputStream(Files.newOutputStream(unpacked))) {
+                            Pack200.newUnpacker().unpack(in, out);
+                        }
+                        Files.move(unpacked, target, StandardCopyOption.REPLACE_EXISTING);
+                    } finally {
+                        Files.deleteIfExists(unpacked);
                     }
                     break;
 
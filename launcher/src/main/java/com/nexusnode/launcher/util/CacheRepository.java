@@ -19,31 +19,33 @@ package com.nexusnode.launcher.util;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.net.URLConnection;
-import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
 import com.nexusnode.launcher.util.function.ExceptionalSupplier;
 import com.nexusnode.launcher.util.gson.JsonUtils;
 import com.nexusnode.launcher.util.io.FileUtils;
-import com.nexusnode.launcher.util.io.IOUtils;
+import com.nexusnode.launcher.util.io.UrlProbeCache;
+import okhttp3.Request;
+import okhttp3.Response;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static com.nexusnode.launcher.util.Logging.LOG;
@@ -52,29 +54,58 @@ public class CacheRepository {
     private Path commonDirectory;
     private Path cacheDirectory;
     private Path indexFile;
-    private Map<String, ETagItem> index;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Path journalFile;
+    private volatile Map<String, ETagItem> index = new ConcurrentHashMap<>();
+    private volatile FileHashIndex hashIndex = new FileHashIndex(null);
+    private volatile UrlProbeCache probeCache = new UrlProbeCache(null);
+    /**
+     * Guards the journal file, readers and writers of {@link #index} never take it except for compaction.
+     */
+    private final Object journalLock = new Object();
+    private int journalSize = 0;
+    private Path accessFile;
+    private final Map<String, Long> accessTimes = new ConcurrentHashMap<>();
+    /**
+     * Guards {@link #pendingAccessSave} and writes of the access file.
+     */
+    private final Object accessLock = new Object();
+    private TimerTask pendingAccessSave = null;
+    private volatile boolean linking = false;
+    private volatile long maxSize = 0;
 
     public void changeDirectory(Path commonDir) {
         commonDirectory = commonDir;
         cacheDirectory = commonDir.resolve("cache");
         indexFile = cacheDirectory.resolve("etag.json");
+        journalFile = cacheDirectory.resolve("etag.journal");
+        hashIndex = new FileHashIndex(cacheDirectory.resolve("hashes.json"));
+        probeCache = new UrlProbeCache(cacheDirectory.resolve("probes.json"));
+        accessFile = cacheDirectory.resolve("access.json");
 
-        lock.writeLock().lock();
-        try {
-            if (Files.isRegularFile(indexFile)) {
-                ETagIndex raw = JsonUtils.GSON.fromJson(FileUtils.readText(indexFile.toFile()), ETagIndex.class);
-                if (raw == null)
-                    index = new HashMap<>();
-                else
-                    index = joinETagIndexes(raw.eTag);
-            } else
-                index = new HashMap<>();
-        } catch (IOException | JsonParseException e) {
-            LOG.log(Level.WARNING, "Unable to read index file", e);
-            index = new HashMap<>();
-        } finally {
-            lock.writeLock().unlock();
+        accessTimes.clear();
+        if (Files.isRegularFile(accessFile)) {
+            try {
+                AccessIndex raw = JsonUtils.fromNonNullJson(FileUtils.readText(accessFile), AccessIndex.class);
+                if (raw.objects != null)
+                    accessTimes.putAll(raw.objects);
+            } catch (IOException | JsonParseException e) {
+                LOG.log(Level.WARNING, "Unable to read cache access times", e);
+            }
+        }
+
+        synchronized (journalLock) {
+            try {
+                ETagIndex raw = Files.isRegularFile(indexFile)
+                        ? JsonUtils.GSON.fromJson(FileUtils.readText(indexFile.toFile()), ETagIndex.class)
+                        : null;
+                List<ETagItem> journal = readJournal();
+                journalSize = journal.size();
+                index = joinETagIndexes(raw == null ? null : raw.eTag, journal);
+            } catch (IOException | JsonParseException e) {
+                LOG.log(Level.WARNING, "Unable to read index file", e);
+                index = new ConcurrentHashMap<>();
+                journalSize = 0;
+            }
         }
     }
 
@@ -86,36 +117,283 @@ public class CacheRepository {
         return cacheDirectory;
     }
 
+    /**
+     * The index of digests of files verified through this repository,
+     * including cached objects and game files such as assets.
+     */
+    public FileHashIndex getHashIndex() {
+        return hashIndex;
+    }
+
+    /**
+     * The results of probing whether remote files exist, such as pack.xz variants of libraries.
+     */
+    public UrlProbeCache getProbeCache() {
+        return probeCache;
+    }
+
+    public boolean isLinking() {
+        return linking;
+    }
+
+    /**
+     * @param linking true if cached objects are hard linked into game directories instead of copied.
+     */
+    public void setLinking(boolean linking) {
+        this.linking = linking;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize the size in bytes {@link #evict(Predicate)} shrinks the cache to, 0 if unlimited.
+     */
+    public void setMaxSize(long maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize cannot be negative");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param key the key of an extraction of native libraries
+     * @return the directory the extraction is shared in, evicted like cached objects.
+     */
+    public Path getNativesDirectory(String key) {
+        return getCacheDirectory().resolve(NATIVES).resolve(key);
+    }
+
+    /**
+     * Records that the shared extraction of native libraries was used, see {@link #getNativesDirectory(String)}.
+     */
+    public void touchNatives(String key) {
+        touch(NATIVES + "/" + key);
+    }
+
     protected Path getFile(String algorithm, String hash) {
         return getCacheDirectory().resolve(algorithm).resolve(hash.substring(0, 2)).resolve(hash);
     }
 
     protected boolean fileExists(String algorithm, String hash) {
         if (hash == null) return false;
-        Path file = getFile(algorithm, hash);
-        if (Files.exists(file)) {
-            try {
-                return Hex.encodeHex(DigestUtils.digest(algorithm, file)).equalsIgnoreCase(hash);
-            } catch (IOException e) {
-                return false;
-            }
-        } else {
-            return false;
-        }
+        return hashIndex.checkHash(getFile(algorithm, hash), algorithm, hash);
     }
 
     public void tryCacheFile(Path path, String algorithm, String hash) throws IOException {
         Path cache = getFile(algorithm, hash);
         if (Files.isRegularFile(cache)) return;
-        FileUtils.copyFile(path.toFile(), cache.toFile());
+        linkOrCopy(path, cache);
+        touch(cache.getFileName().toString());
     }
 
     public Path cacheFile(Path path, String algorithm, String hash) throws IOException {
         Path cache = getFile(algorithm, hash);
-        FileUtils.copyFile(path.toFile(), cache.toFile());
+        linkOrCopy(path, cache);
+        touch(cache.getFileName().toString());
         return cache;
     }
 
+    /**
+     * Places the cached object at {@code target}, replacing the file there.
+     * The object is hard linked if linking is enabled, and copied otherwise or if linking fails,
+     * for example when {@code target} is on another file system.
+     *
+     * Writers of game files must replace them rather than write in place, or they would modify the cached object too.
+     * Downloads always move a temporary file over the target, and {@link #fileExists(String, String)} verifies objects
+     * before they are reused, so a modified object is downloaded again.
+     *
+     * @param cached the cached object
+     * @param target where the object is needed
+     * @throws IOException if the object can be neither linked nor copied.
+     */
+    public void materialize(Path cached, Path target) throws IOException {
+        touch(cached.getFileName().toString());
+        linkOrCopy(cached, target);
+    }
+
+    private void linkOrCopy(Path source, Path target) throws IOException {
+        if (linking) {
+            try {
+                if (Files.isSameFile(source, target))
+                    return;
+            } catch (IOException ignored) {
+                // target does not exist
+            }
+
+            try {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+                Files.deleteIfExists(target);
+                Files.createLink(target, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                LOG.log(Level.FINER, "Unable to link " + source + " to " + target + ", copying it instead", e);
+            }
+        }
+        FileUtils.copyFile(source, target);
+    }
+
+    /**
+     * @param name the hash of a cached object, or natives/&lt;key&gt; for a shared extraction of native libraries.
+     */
+    private void touch(String name) {
+        accessTimes.put(name, System.currentTimeMillis());
+        scheduleSaveAccessTimes();
+    }
+
+    /**
+     * Saves access.json once no object has been used for {@link #SAVE_DELAY} milliseconds,
+     * so that access times survive even if the cache is never evicted.
+     */
+    private void scheduleSaveAccessTimes() {
+        synchronized (accessLock) {
+            if (pendingAccessSave != null)
+                pendingAccessSave.cancel();
+            pendingAccessSave = new TimerTask() {
+                @Override
+                public void run() {
+                    saveAccessTimes();
+                }
+            };
+            SAVE_TIMER.schedule(pendingAccessSave, SAVE_DELAY);
+        }
+    }
+
+    /**
+     * Saves access.json now if there are access times not saved yet.
+     */
+    public void flushAccessTimes() {
+        synchronized (accessLock) {
+            if (pendingAccessSave == null)
+                return;
+        }
+        saveAccessTimes();
+    }
+
+    /**
+     * Deletes the least recently used objects and shared extractions of native libraries until the cache fits {@link #getMaxSize()}.
+     * Objects still referenced are never deleted, nor are objects hard linked into game directories
+     * on file systems reporting link counts.
+     * Other file systems, such as NTFS on Windows, do not expose link counts to Java, so linked objects
+     * not referenced may be deleted there. The game files linked to them are kept, only no space is freed.
+     *
+     * @param referenced tests whether the object with the given hash is used by an installed version.
+     * @throws IOException if the cache directory cannot be listed.
+     */
+    public void evict(Predicate<String> referenced) throws IOException {
+        long limit = maxSize;
+        if (limit > 0 && Files.isDirectory(cacheDirectory)) {
+            List<CachedObject> objects = new ArrayList<>();
+            long total = 0;
+            try (DirectoryStream<Path> algorithms = Files.newDirectoryStream(cacheDirectory, Files::isDirectory)) {
+                for (Path algorithm : algorithms) {
+                    if (algorithm.getFileName().toString().equals(NATIVES))
+                        continue;
+                    try (Stream<Path> files = Files.walk(algorithm, 2)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                            if (!attributes.isRegularFile() || !isObject(file))
+                                continue;
+                            String hash = file.getFileName().toString();
+                            total += attributes.size();
+                            objects.add(new CachedObject(file, hash, false, attributes.size(),
+                                    accessTimes.getOrDefault(hash, attributes.lastModifiedTime().toMillis())));
+                        }
+                    }
+                }
+            }
+
+            Path natives = cacheDirectory.resolve(NATIVES);
+            if (Files.isDirectory(natives)) {
+                // Extractions in progress are in temporary directories named <key>-<random number>, which are skipped.
+                try (DirectoryStream<Path> extractions = Files.newDirectoryStream(natives, file -> Files.isDirectory(file) && isObjectName(file.getFileName().toString()))) {
+                    for (Path extraction : extractions) {
+                        String name = NATIVES + "/" + extraction.getFileName();
+                        long size = 0;
+                        try (Stream<Path> files = Files.walk(extraction)) {
+                            for (Path file : (Iterable<Path>) files::iterator)
+                                if (Files.isRegularFile(file))
+                                    size += Files.size(file);
+                        }
+                        total += size;
+                        objects.add(new CachedObject(extraction, name, true, size,
+                                accessTimes.getOrDefault(name, Files.getLastModifiedTime(extraction).toMillis())));
+                    }
+                }
+            }
+
+            if (total > limit) {
+                objects.sort(Comparator.comparingLong(object -> object.lastAccess));
+                for (CachedObject object : objects) {
+                    if (total <= limit)
+                        break;
+                    // Natives directories get their own copies or links of shared extractions, which can always be deleted.
+                    if (!object.directory && (referenced.test(object.hash) || isLinked(object.file)))
+                        continue;
+
+                    try {
+                        if (object.directory)
+                            FileUtils.deleteDirectory(object.file.toFile());
+                        else
+                            Files.delete(object.file);
+                        total -= object.size;
+                        accessTimes.remove(object.hash);
+                        if (!object.directory)
+                            hashIndex.remove(object.file);
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "Unable to evict cached object " + object.file, e);
+                    }
+                }
+                LOG.info("Cache evicted to " + total + " bytes, limit " + limit + " bytes");
+            }
+        }
+
+        hashIndex.save();
+        saveAccessTimes();
+    }
+
+    /**
+     * Objects are stored as cache/&lt;algorithm&gt;/&lt;first 2 characters of hash&gt;/&lt;hash&gt;.
+     */
+    private static boolean isObject(Path file) {
+        String name = file.getFileName().toString();
+        Path parent = file.getParent();
+        return parent != null && name.startsWith(parent.getFileName().toString()) && isObjectName(name);
+    }
+
+    private static boolean isObjectName(String name) {
+        return name.length() > 2 && name.chars().allMatch(ch -> Character.digit(ch, 16) >= 0);
+    }
+
+    /**
+     * @return true if the file has other hard links, false if it does not or the link count is unknown.
+     */
+    private static boolean isLinked(Path file) {
+        try {
+            Object links = Files.getAttribute(file, "unix:nlink");
+            return links instanceof Integer && (Integer) links > 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public void saveAccessTimes() {
+        synchronized (accessLock) {
+            if (pendingAccessSave != null) {
+                pendingAccessSave.cancel();
+                pendingAccessSave = null;
+            }
+            if (accessFile == null) return;
+            try {
+                Path temp = accessFile.resolveSibling(accessFile.getFileName() + ".tmp");
+                FileUtils.writeText(temp.toFile(), JOURNAL_GSON.toJson(new AccessIndex(new HashMap<>(accessTimes))));
+                Files.move(temp, accessFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to save cache access times", e);
+            }
+        }
+    }
+
     public Optional<Path> checkExistentFile(Path original, String algorithm, String hash) {
         if (fileExists(algorithm, hash))
             return Optional.of(getFile(algorithm, hash));
@@ -144,15 +422,8 @@ public class CacheRepository {
         return cache;
     }
 
-    public Path getCachedRemoteFile(URLConnection conn) throws IOException {
-        String url = conn.getURL().toString();
-        lock.readLock().lock();
-        ETagItem eTagItem;
-        try {
-            eTagItem = index.get(url);
-        } finally {
-            lock.readLock().unlock();
-        }
+    public Path getCachedRemoteFile(Response response) throws IOException {
+        ETagItem eTagItem = index.get(getRequestedURL(response));
         if (eTagItem == null) throw new IOException("Cannot find the URL");
         if (StringUtils.isBlank(eTagItem.hash) || !fileExists(SHA1, eTagItem.hash)) throw new FileNotFoundException();
         Path file = getFile(SHA1, eTagItem.hash);
@@ -164,67 +435,60 @@ public class CacheRepository {
         return file;
     }
 
-    public void removeRemoteEntry(URLConnection conn) {
-        String url = conn.getURL().toString();
-        lock.readLock().lock();
-        try {
-            index.remove(url);
-        } finally {
-            lock.readLock().unlock();
-        }
+    public void removeRemoteEntry(Response response) {
+        index.remove(getRequestedURL(response));
     }
 
-    public void injectConnection(URLConnection conn) {
-        String url = conn.getURL().toString();
-        lock.readLock().lock();
-        ETagItem eTagItem;
-        try {
-            eTagItem = index.get(url);
-        } finally {
-            lock.readLock().unlock();
-        }
-        if (eTagItem == null) return;
+    /**
+     * Makes the request conditional on the ETag of the cached copy, if there is one.
+     *
+     * @param request the request to the remote file
+     * @return the request with {@code If-None-Match} header set if the remote file has been cached.
+     */
+    public Request injectRequest(Request request) {
+        ETagItem eTagItem = index.get(request.url().toString());
+        if (eTagItem == null) return request;
         if (eTagItem.eTag != null)
-            conn.setRequestProperty("If-None-Match", eTagItem.eTag);
+            return request.newBuilder().header("If-None-Match", eTagItem.eTag).build();
         // if (eTagItem.getRemoteLastModified() != null)
-        //     conn.setRequestProperty("If-Modified-Since", eTagItem.getRemoteLastModified());
+        //     request.newBuilder().header("If-Modified-Since", eTagItem.getRemoteLastModified());
+        return request;
     }
 
-    public synchronized void cacheRemoteFile(Path downloaded, URLConnection conn) throws IOException {
-        String eTag = conn.getHeaderField("ETag");
+    public void cacheRemoteFile(Path downloaded, Response response) throws IOException {
+        String eTag = response.header("ETag");
         if (eTag == null) return;
-        String url = conn.getURL().toString();
-        String lastModified = conn.getHeaderField("Last-Modified");
+        String url = getRequestedURL(response);
+        String lastModified = response.header("Last-Modified");
         String hash = Hex.encodeHex(DigestUtils.digest(SHA1, downloaded));
         Path cached = cacheFile(downloaded, SHA1, hash);
         ETagItem eTagItem = new ETagItem(url, eTag, hash, Files.getLastModifiedTime(cached).toMillis(), lastModified);
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
-        try {
-            index.compute(eTagItem.url, updateEntity(eTagItem));
-            saveETagIndex();
-        } finally {
-            writeLock.unlock();
-        }
+        index.compute(eTagItem.url, updateEntity(eTagItem));
+        appendJournal(eTagItem);
     }
 
-    public synchronized void cacheText(String text, URLConnection conn) throws IOException {
-        String eTag = conn.getHeaderField("ETag");
+    public void cacheText(String text, Response response) throws IOException {
+        String eTag = response.header("ETag");
         if (eTag == null) return;
-        String url = conn.getURL().toString();
-        String lastModified = conn.getHeaderField("Last-Modified");
+        String url = getRequestedURL(response);
+        String lastModified = response.header("Last-Modified");
         String hash = Hex.encodeHex(DigestUtils.digest(SHA1, text));
         Path cached = getFile(SHA1, hash);
         FileUtils.writeText(cached.toFile(), text);
         ETagItem eTagItem = new ETagItem(url, eTag, hash, Files.getLastModifiedTime(cached).toMillis(), lastModified);
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
-        try {
-            index.compute(eTagItem.url, updateEntity(eTagItem));
-            saveETagIndex();
-        } finally {
-            writeLock.unlock();
-        }
+        index.compute(eTagItem.url, updateEntity(eTagItem));
+        appendJournal(eTagItem);
+    }
+
+    /**
+     * Entries are keyed by the URL originally requested, before following any redirect,
+     * so that {@link #injectRequest(Request)} finds them again.
+     */
+    private static String getRequestedURL(Response response) {
+        Response first = response;
+        while (first.priorResponse() != null)
+            first = first.priorResponse();
+        return first.request().url().toString();
     }
 
     private BiFunction<String, ETagItem, ETagItem> updateEntity(ETagItem newItem) {
@@ -259,23 +523,127 @@ public class CacheRepository {
         return eTags;
     }
 
-    public void saveETagIndex() throws IOException {
-        try (RandomAccessFile file = new RandomAccessFile(indexFile.toFile(), "rw"); FileChannel channel = file.getChannel()) {
-            FileLock lock = channel.lock();
+    /**
+     * Appends the entry to the journal, which is an ETag entry in compact json per line.
+     * Writes are O(1), the journal is merged into etag.json every {@link #JOURNAL_COMPACTION_THRESHOLD} entries.
+     * Other launcher instances append to the same journal, appends are serialized by an exclusive file lock.
+     */
+    private void appendJournal(ETagItem item) throws IOException {
+        byte[] line = (JOURNAL_GSON.toJson(item) + "\n").getBytes(UTF_8);
+        boolean compact;
+        synchronized (journalLock) {
+            Files.createDirectories(journalFile.getParent());
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 FileLock ignored = channel.lock()) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            compact = ++journalSize >= JOURNAL_COMPACTION_THRESHOLD;
+        }
+
+        if (compact)
+            saveETagIndex();
+    }
+
+    private List<ETagItem> readJournal() throws IOException {
+        if (!Files.isRegularFile(journalFile))
+            return Collections.emptyList();
+
+        return parseJournal(new String(Files.readAllBytes(journalFile), UTF_8));
+    }
+
+    /**
+     * Reads the journal through the channel holding the lock, since Windows does not allow
+     * other handles to read a locked region.
+     */
+    private static List<ETagItem> readJournal(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.position(0);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                break;
+        return parseJournal(new String(buffer.array(), 0, buffer.position(), UTF_8));
+    }
+
+    private static List<ETagItem> parseJournal(String journal) {
+        List<ETagItem> items = new ArrayList<>();
+        for (String line : journal.split("\n")) {
+            if (StringUtils.isBlank(line))
+                continue;
             try {
-                ETagIndex indexOnDisk = JsonUtils.fromMaybeMalformedJson(new String(IOUtils.readFullyWithoutClosing(Channels.newInputStream(channel)), UTF_8), ETagIndex.class);
-                Map<String, ETagItem> newIndex = joinETagIndexes(indexOnDisk == null ? null : indexOnDisk.eTag, index.values());
-                channel.truncate(0);
-                OutputStream os = Channels.newOutputStream(channel);
-                ETagIndex writeTo = new ETagIndex(newIndex.values());
-                IOUtils.write(JsonUtils.GSON.toJson(writeTo).getBytes(UTF_8), os);
-                this.index = newIndex;
-            } finally {
-                lock.release();
+                ETagItem item = JOURNAL_GSON.fromJson(line, ETagItem.class);
+                if (item != null && item.url != null)
+                    items.add(item);
+            } catch (JsonParseException e) {
+                // The last line may be torn if the launcher was killed while appending.
+                LOG.log(Level.WARNING, "Skipping malformed ETag journal entry", e);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Compacts the journal into etag.json, merging entries written by other launcher instances.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void saveETagIndex() throws IOException {
+        synchronized (journalLock) {
+            Files.createDirectories(journalFile.getParent());
+            try (FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = journal.lock()) {
+                ETagIndex indexOnDisk = Files.isRegularFile(indexFile)
+                        ? JsonUtils.fromMaybeMalformedJson(FileUtils.readText(indexFile), ETagIndex.class)
+                        : null;
+                Map<String, ETagItem> newIndex = joinETagIndexes(indexOnDisk == null ? null : indexOnDisk.eTag, readJournal(journal), index.values());
+
+                Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+                FileUtils.writeText(temp.toFile(), JsonUtils.GSON.toJson(new ETagIndex(newIndex.values())));
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journal.truncate(0);
+                journalSize = 0;
+
+                // Entries added concurrently since the snapshot of index values are kept.
+                newIndex.forEach((url, item) -> index.compute(url, updateEntity(item)));
             }
         }
     }
 
+    private static final class CachedObject {
+        private final Path file;
+        /**
+         * The key of the access time, which is the hash of objects.
+         */
+        private final String hash;
+        private final boolean directory;
+        private final long size;
+        private final long lastAccess;
+
+        CachedObject(Path file, String hash, boolean directory, long size, long lastAccess) {
+            this.file = file;
+            this.hash = hash;
+            this.directory = directory;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class AccessIndex {
+        private final Map<String, Long> objects;
+
+        /**
+         * For Gson.
+         */
+        public AccessIndex() {
+            this(null);
+        }
+
+        public AccessIndex(Map<String, Long> objects) {
+            this.objects = objects;
+        }
+    }
+
     private class ETagIndex {
         private final Collection<ETagItem> eTag;
 
@@ -353,4 +721,11 @@ public class CacheRepository {
     }
 
     public static final String SHA1 = "SHA-1";
+
+    private static final String NATIVES = "natives";
+
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 512;
+    protected static final long SAVE_DELAY = 1000;
+    protected static final Timer SAVE_TIMER = new Timer("CacheIndexSaver", true);
+    private static final Gson JOURNAL_GSON = new Gson();
 }
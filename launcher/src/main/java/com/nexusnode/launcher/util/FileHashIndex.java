@@ -0,0 +1,164 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A persistent index from (path, size, last modified time) to the digest of a file,
+ * so that files untouched since they were last hashed are never hashed again.
+ * An entry may also record what else the file was verified against, such as the checksums.sha1 of a jar.
+ *
+ * @author bluebird6900
+ */
+public final class FileHashIndex {
+
+    private final PersistentIndex<Entry> entries;
+
+    /**
+     * @param indexFile where the index persists, null if the index lives in memory only.
+     */
+    public FileHashIndex(Path indexFile) {
+        this.entries = new PersistentIndex<>(indexFile, "files", Entry.class);
+    }
+
+    /**
+     * Get the digest of the file, hashing it only if it has changed since it was last hashed.
+     *
+     * @param file the file to hash
+     * @param algorithm the digest algorithm, for example "SHA-1"
+     * @return the digest in lower case hex
+     * @throws IOException if the file cannot be read
+     */
+    public String getHash(Path file, String algorithm) throws IOException {
+        String hash = getRecordedHash(file, algorithm);
+        if (hash != null)
+            return hash;
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        hash = Hex.encodeHex(DigestUtils.digest(algorithm, file));
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (!PersistentIndex.isRacy(lastModified))
+            entries.put(getKey(file), new Entry(attributes.size(), lastModified, algorithm, hash, null));
+        return hash;
+    }
+
+    /**
+     * Get the digest of the file without reading it.
+     *
+     * @return the digest recorded for the file, null if there is none or the file has changed since.
+     * @throws IOException if the attributes of the file cannot be read
+     */
+    public String getRecordedHash(Path file, String algorithm) throws IOException {
+        Entry entry = find(file, algorithm);
+        return entry == null ? null : entry.hash;
+    }
+
+    /**
+     * @param verification identifies what the file was verified against
+     * @return true if the file has been recorded as verified against {@code verification} and has not changed since.
+     * @throws IOException if the attributes of the file cannot be read
+     * @see #put(Path, String, String, String)
+     */
+    public boolean isVerified(Path file, String algorithm, String verification) throws IOException {
+        Entry entry = find(file, algorithm);
+        return entry != null && verification.equals(entry.verification);
+    }
+
+    private Entry find(Path file, String algorithm) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry entry = entries.get(getKey(file));
+        if (entry != null && entry.size == attributes.size() && entry.lastModified == attributes.lastModifiedTime().toMillis() && algorithm.equals(entry.algorithm))
+            return entry;
+        return null;
+    }
+
+    private static String getKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Checks the digest of the file, see {@link #getHash(Path, String)}.
+     *
+     * @return true if the file exists and its digest equals to {@code hash}.
+     */
+    public boolean checkHash(Path file, String algorithm, String hash) {
+        if (hash == null || !Files.isRegularFile(file)) return false;
+        try {
+            return getHash(file, algorithm).equalsIgnoreCase(hash);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Record the digest of a file already verified by the caller, for example after downloading it.
+     */
+    public void put(Path file, String algorithm, String hash) throws IOException {
+        put(file, algorithm, hash, null);
+    }
+
+    /**
+     * Record the digest of a file already verified by the caller, and what else it was verified against.
+     *
+     * @param verification identifies what the file was verified against, null if nothing else.
+     */
+    public void put(Path file, String algorithm, String hash, String verification) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (!PersistentIndex.isRacy(lastModified))
+            entries.put(getKey(file), new Entry(attributes.size(), lastModified, algorithm, hash.toLowerCase(), verification));
+    }
+
+    public void remove(Path file) {
+        entries.remove(getKey(file));
+    }
+
+    /**
+     * Write the index to disk if it has changed since loaded or last saved.
+     */
+    public void save() {
+        entries.save();
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String algorithm;
+        private final String hash;
+        private final String verification;
+
+        /**
+         * For Gson.
+         */
+        public Entry() {
+            this(0, 0, null, null, null);
+        }
+
+        public Entry(long size, long lastModified, String algorithm, String hash, String verification) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.algorithm = algorithm;
+            this.hash = hash;
+            this.verification = verification;
+        }
+    }
+}
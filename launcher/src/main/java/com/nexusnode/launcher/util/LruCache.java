@@ -0,0 +1,171 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.util;
+
+import com.nexusnode.launcher.util.function.ExceptionalFunction;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache evicting the least recently used entries once the total weight of its values exceeds a limit.
+ *
+ * Concurrent loads of the same key are coalesced, only the first caller runs the loader and the others wait for it,
+ * getting its value or the exception it threw.
+ *
+ * @author bluebird6900
+ */
+public final class LruCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final LinkedHashMap<K, Weighted<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private long weight = 0;
+
+    /**
+     * @param maxWeight the maximum total weight of the cached values
+     * @param weigher the weight of a value, for example the bytes it occupies
+     */
+    public LruCache(long maxWeight, ToLongFunction<? super V> weigher) {
+        if (maxWeight <= 0)
+            throw new IllegalArgumentException("maxWeight must be positive");
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the cached value, null if not cached.
+     */
+    public synchronized V getIfPresent(K key) {
+        Weighted<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Get the cached value, or load and cache it.
+     * If another thread is loading the same key, waits for it instead of loading it again,
+     * and throws the exception of the other thread if its load failed.
+     *
+     * @param key the key
+     * @param loader loads the value, not called while holding any lock of this cache.
+     * @return the value, never null.
+     * @throws E if {@code loader} failed.
+     */
+    public <E extends Exception> V get(K key, ExceptionalFunction<? super K, ? extends V, E> loader) throws E {
+        V cached = getIfPresent(key);
+        if (cached != null)
+            return cached;
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw LruCache.<E>propagate(e.getCause());
+            }
+        }
+
+        try {
+            V value = getIfPresent(key); // loaded after the first lookup
+            if (value == null) {
+                value = loader.apply(key);
+                if (value == null)
+                    throw new NullPointerException("Loader returned null for " + key);
+                put(key, value);
+            }
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Rethrows the failure of a loader, which is either an {@code E}, an unchecked exception or an error.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E propagate(Throwable e) throws E {
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        throw (E) e;
+    }
+
+    /**
+     * Caches the value. A value heavier than {@link #getMaxWeight()} is not cached.
+     */
+    public synchronized void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        Weighted<V> previous = valueWeight > maxWeight ? entries.remove(key) : entries.put(key, new Weighted<>(value, valueWeight));
+        if (previous != null)
+            weight -= previous.weight;
+        if (valueWeight > maxWeight)
+            return;
+        weight += valueWeight;
+
+        Iterator<Weighted<V>> iterator = entries.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        Weighted<V> previous = entries.remove(key);
+        if (previous != null)
+            weight -= previous.weight;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private static final class Weighted<V> {
+        private final V value;
+        private final long weight;
+
+        Weighted(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
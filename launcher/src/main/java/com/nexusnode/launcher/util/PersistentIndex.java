@@ -0,0 +1,139 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.nexusnode.launcher.util.gson.JsonUtils;
+import com.nexusnode.launcher.util.io.FileUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+import static com.nexusnode.launcher.util.Logging.LOG;
+
+/**
+ * A thread-safe map from string keys to entries, persisted as a json object holding the map in a single field.
+ *
+ * The index only saves work, so an unreadable file starts an empty index,
+ * and the file is replaced atomically so that a crash never leaves a truncated one behind.
+ *
+ * @author bluebird6900
+ */
+public final class PersistentIndex<E> {
+
+    /**
+     * Files modified within this interval before being read must not be indexed by their timestamps,
+     * since a coarse file system timestamp could not tell a later modification apart.
+     */
+    public static final long RACY_INTERVAL = 2000;
+
+    private final Path file;
+    private final String field;
+    private final Type mapType;
+    private final Map<String, E> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /**
+     * @param file where the index persists, null if the index lives in memory only.
+     * @param field the name of the field holding the entries in the json object
+     * @param entryType the class of entries, deserialized by Gson
+     */
+    public PersistentIndex(Path file, String field, Class<E> entryType) {
+        this.file = file;
+        this.field = field;
+        this.mapType = TypeToken.getParameterized(Map.class, String.class, entryType).getType();
+
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                JsonElement map = JsonUtils.fromNonNullJson(FileUtils.readText(file), JsonObject.class).get(field);
+                if (map != null && map.isJsonObject()) {
+                    Map<String, E> loaded = JsonUtils.GSON.fromJson(map, mapType);
+                    loaded.forEach((key, entry) -> {
+                        if (key != null && entry != null)
+                            entries.put(key, entry);
+                    });
+                }
+            } catch (IOException | JsonParseException e) {
+                LOG.log(Level.WARNING, "Unable to read index " + file, e);
+            }
+        }
+    }
+
+    /**
+     * @return true if a file last modified at {@code lastModified} may still change without its timestamp changing.
+     */
+    public static boolean isRacy(long lastModified) {
+        return System.currentTimeMillis() - lastModified < RACY_INTERVAL;
+    }
+
+    public E get(String key) {
+        return entries.get(key);
+    }
+
+    public void put(String key, E entry) {
+        entries.put(key, entry);
+        dirty.set(true);
+    }
+
+    public void remove(String key) {
+        if (entries.remove(key) != null)
+            dirty.set(true);
+    }
+
+    public void removeIf(Predicate<? super E> predicate) {
+        if (entries.values().removeIf(predicate))
+            dirty.set(true);
+    }
+
+    public void retainKeys(Collection<String> keys) {
+        if (entries.keySet().retainAll(keys))
+            dirty.set(true);
+    }
+
+    /**
+     * Write the index to disk if it has changed since loaded or last saved.
+     */
+    public void save() {
+        if (file == null || !dirty.compareAndSet(true, false)) return;
+
+        synchronized (this) {
+            try {
+                JsonObject root = new JsonObject();
+                root.add(field, JsonUtils.GSON.toJsonTree(entries, mapType));
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                FileUtils.writeText(temp.toFile(), JsonUtils.GSON.toJson(root));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                dirty.set(true);
+                LOG.log(Level.WARNING, "Unable to save index " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free bounded buffer keeping the latest {@link #capacity()} elements.
+ *
+ * Any number of threads may add elements, a full buffer overwrites its oldest element.
+ * A single consumer drains elements in the order they were added, skipping the ones overwritten before being drained.
+ *
+ * @author bluebird6900
+ */
+public final class RingBuffer<T> {
+
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+
+    public RingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public void add(T element) {
+        long sequence = tail.getAndIncrement();
+        int index = index(sequence);
+        Slot<T> slot = new Slot<>(sequence, element);
+        while (true) {
+            // A producer of a later lap may have stored its element first, which must not be replaced by an older one.
+            Slot<T> current = slots.get(index);
+            if (current != null && current.sequence > sequence)
+                return; // overwritten before stored
+            if (slots.compareAndSet(index, current, slot))
+                return;
+        }
+    }
+
+    /**
+     * Moves the elements added since the last drain into {@code sink}.
+     * Must only be called by the consumer thread.
+     *
+     * @param sink where the drained elements are added to
+     * @param maxElements the maximum number of elements to drain
+     * @return the number of elements drained
+     */
+    public int drainTo(List<? super T> sink, int maxElements) {
+        long end = tail.get();
+        if (end - head > capacity())
+            head = end - capacity();
+
+        int drained = 0;
+        while (head < end && drained < maxElements) {
+            Slot<T> slot = slots.get(index(head));
+            if (slot == null || slot.sequence < head)
+                break; // the producer of this sequence has not stored it yet
+            if (slot.sequence > head) {
+                // overwritten before drained
+                head = Math.max(head + 1, slot.sequence - capacity() + 1);
+                continue;
+            }
+            sink.add(slot.value);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return the latest elements in the order they were added, at most {@link #capacity()}.
+     */
+    public List<T> snapshot() {
+        long end = tail.get();
+        List<T> result = new ArrayList<>(capacity());
+        for (long sequence = Math.max(0, end - capacity()); sequence < end; sequence++) {
+            Slot<T> slot = slots.get(index(sequence));
+            if (slot != null && slot.sequence == sequence)
+                result.add(slot.value);
+        }
+        return result;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % slots.length());
+    }
+
+    private static final class Slot<T> {
+        private final long sequence;
+        private final T value;
+
+        Slot(long sequence, T value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.util.io;
+
+import okhttp3.*;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The HTTP transport shared by all download tasks.
+ *
+ * All requests go through one OkHttp client, so that connections are kept alive and reused across tasks,
+ * and HTTP/2 capable servers multiplex concurrent requests over a single connection
+ * instead of paying TCP and TLS setup for every file.
+ *
+ * @author bluebird6900
+ */
+public final class HttpTransport {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+
+    private final ConnectionPool connectionPool = new ConnectionPool(32, 5, TimeUnit.MINUTES);
+    private final Dispatcher dispatcher = new Dispatcher();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private volatile int maxConnectionsPerHost;
+    private volatile Proxy proxy;
+    private volatile OkHttpClient client;
+
+    public HttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    public HttpTransport(int maxConnectionsPerHost) {
+        setMaxConnectionsPerHost(maxConnectionsPerHost);
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Changes the proxy of all subsequent requests.
+     * Idle pooled connections are dropped since they were established through the old proxy.
+     *
+     * @param proxy the proxy to use, or null to use the system proxy selector.
+     */
+    public synchronized void setProxy(Proxy proxy) {
+        this.proxy = proxy;
+        rebuildClient();
+        connectionPool.evictAll();
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Limits concurrent requests to the same host, including requests multiplexed over one HTTP/2 connection.
+     *
+     * @param maxConnectionsPerHost the maximum concurrent requests per host.
+     */
+    public synchronized void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost <= 0)
+            throw new IllegalArgumentException("maxConnectionsPerHost must be positive");
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        dispatcher.setMaxRequestsPerHost(maxConnectionsPerHost);
+        // Requests in flight release the permits they acquired from the old semaphores.
+        hostPermits.clear();
+        rebuildClient();
+    }
+
+    private void rebuildClient() {
+        client = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .proxy(proxy)
+                .proxyAuthenticator(Authenticator.JAVA_NET_AUTHENTICATOR)
+                .connectTimeout(15, TimeUnit.SECONDS)
+                .readTimeout(15, TimeUnit.SECONDS)
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    public static Request.Builder newRequest(URL url) {
+        return new Request.Builder().url(url);
+    }
+
+    /**
+     * Executes the request on the calling thread.
+     * The caller must close the returned response, which also frees the per-host slot.
+     *
+     * @param request the request to execute
+     * @return the response of the request, redirects have been followed.
+     * @throws IOException if an I/O error occurs, or current thread is interrupted while waiting for a slot.
+     */
+    public Response execute(Request request) throws IOException {
+        Semaphore permit = hostPermits.computeIfAbsent(request.url().host(), host -> new Semaphore(maxConnectionsPerHost, true));
+        try {
+            permit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for connection to " + request.url().host());
+        }
+
+        Response response;
+        try {
+            response = client.newCall(request).execute();
+        } catch (IOException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            permit.release();
+            return response;
+        }
+
+        AtomicBoolean released = new AtomicBoolean(false);
+        BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (released.compareAndSet(false, true))
+                        permit.release();
+                }
+            }
+        });
+        return response.newBuilder()
+                .body(ResponseBody.create(source, body.contentType(), body.contentLength()))
+                .build();
+    }
+
+    private static HttpTransport instance = new HttpTransport();
+
+    public static HttpTransport getInstance() {
+        return instance;
+    }
+
+    public static void setInstance(HttpTransport instance) {
+        HttpTransport.instance = instance;
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.nexusnode.launcher.util.io;
 
+import okhttp3.Response;
+
 import java.io.*;
 import java.net.*;
 import java.util.List;
@@ -214,11 +216,9 @@ public final class NetworkUtils {
     }
 
     public static boolean urlExists(URL url) throws IOException {
-        HttpURLConnection con = createConnection(url);
-        con = resolveConnection(con);
-        int responseCode = con.getResponseCode();
-        con.disconnect();
-        return responseCode / 100 == 2;
+        try (Response response = HttpTransport.getInstance().execute(HttpTransport.newRequest(url).build())) {
+            return response.code() / 100 == 2;
+        }
     }
 
     // ==== Shortcut methods for encoding/decoding URLs in UTF-8 ====
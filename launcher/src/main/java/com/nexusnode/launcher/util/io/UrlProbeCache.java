@@ -0,0 +1,114 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.util.io;
+
+import com.nexusnode.launcher.util.PersistentIndex;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of whether remote files exist, such as the pack.xz variant of libraries.
+ *
+ * Results are keyed by the download provider and the probed URL, and are probed again after {@link #getTimeToLive()}.
+ * Only definitive answers are cached: 2xx as existing, 404 and 410 as missing.
+ * Failed probes, for example when offline, throttled or on server errors, are never cached.
+ *
+ * @author bluebird6900
+ */
+public final class UrlProbeCache {
+
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(7);
+
+    private final long timeToLive;
+    private final PersistentIndex<Entry> entries;
+
+    /**
+     * @param cacheFile where the cache persists, null if the cache lives in memory only.
+     */
+    public UrlProbeCache(Path cacheFile) {
+        this(cacheFile, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public UrlProbeCache(Path cacheFile, long timeToLive) {
+        this.timeToLive = timeToLive;
+        this.entries = new PersistentIndex<>(cacheFile, "probes", Entry.class);
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Checks whether the remote file exists, probing it only if not probed within {@link #getTimeToLive()}.
+     *
+     * @param url the url to probe
+     * @param provider identifies the download provider the url belongs to
+     * @return true if the server answered 2xx, false if it answered 404 or 410.
+     * @throws IOException if the url cannot be probed or the server answered anything else.
+     */
+    public boolean exists(URL url, String provider) throws IOException {
+        String key = provider + " " + url;
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.probedAt < timeToLive && now >= entry.probedAt)
+            return entry.exists;
+
+        boolean exists;
+        try (Response response = HttpTransport.getInstance().execute(HttpTransport.newRequest(url).build())) {
+            int code = response.code();
+            if (code / 100 == 2)
+                exists = true;
+            else if (code == 404 || code == 410)
+                exists = false;
+            else
+                throw new ResponseCodeException(url, code);
+        }
+        entries.put(key, new Entry(exists, now));
+        return exists;
+    }
+
+    /**
+     * Write the cache to disk if it has changed since loaded or last saved.
+     */
+    public void save() {
+        long now = System.currentTimeMillis();
+        entries.removeIf(entry -> now - entry.probedAt >= timeToLive);
+        entries.save();
+    }
+
+    private static final class Entry {
+        private final boolean exists;
+        private final long probedAt;
+
+        /**
+         * For Gson.
+         */
+        public Entry() {
+            this(false, 0);
+        }
+
+        public Entry(boolean exists, long probedAt) {
+            this.exists = exists;
+            this.probedAt = probedAt;
+        }
+    }
+}
@@ -17,12 +17,13 @@
  */
 package com.nexusnode.launcher.util.javafx;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 
@@ -33,6 +34,9 @@ import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
 
 /**
+ * A cache whose bindings are invalidated when values are loaded, put or invalidated.
+ * Values are loaded at most once at a time per key. Null values are not cached.
+ *
  * @author yushijinhun
  */
 public class ObservableCache<K, V, E extends Exception> {
@@ -42,9 +46,9 @@ public class ObservableCache<K, V, E extends Exception> {
     private final V fallbackValue;
     private final Executor executor;
     private final ObservableHelper observable = new ObservableHelper();
-    private final Map<K, V> cache = new HashMap<>();
-    private final Map<K, CompletableFuture<V>> pendings = new HashMap<>();
-    private final Map<K, Boolean> invalidated = new HashMap<>();
+    private final Map<K, V> cache = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> pendings = new ConcurrentHashMap<>();
+    private final Set<K> invalidated = ConcurrentHashMap.newKeySet();
 
     public ObservableCache(ExceptionalFunction<K, V, E> source, BiConsumer<K, Throwable> exceptionHandler, V fallbackValue, Executor executor) {
         this.source = source;
@@ -54,49 +58,41 @@ public class ObservableCache<K, V, E extends Exception> {
     }
 
     public Optional<V> getImmediately(K key) {
-        synchronized (this) {
-            return Optional.ofNullable(cache.get(key));
-        }
+        return Optional.ofNullable(cache.get(key));
     }
 
     public void put(K key, V value) {
-        synchronized (this) {
-            cache.put(key, value);
-            invalidated.remove(key);
-        }
+        store(key, value);
         Platform.runLater(observable::invalidate);
     }
 
+    private void store(K key, V value) {
+        if (value == null)
+            cache.remove(key);
+        else
+            cache.put(key, value);
+        invalidated.remove(key);
+    }
+
     private CompletableFuture<V> query(K key, Executor executor) {
-        CompletableFuture<V> future;
-        synchronized (this) {
-            CompletableFuture<V> prev = pendings.get(key);
-            if (prev != null) {
-                return prev;
-            } else {
-                future = new CompletableFuture<>();
-                pendings.put(key, future);
-            }
-        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> prev = pendings.putIfAbsent(key, future);
+        if (prev != null)
+            return prev;
 
         executor.execute(() -> {
             V result;
             try {
                 result = source.apply(key);
             } catch (Throwable ex) {
-                synchronized (this) {
-                    pendings.remove(key);
-                }
+                pendings.remove(key, future);
                 exceptionHandler.accept(key, ex);
                 future.completeExceptionally(ex);
                 return;
             }
 
-            synchronized (this) {
-                cache.put(key, result);
-                invalidated.remove(key);
-                pendings.remove(key, future);
-            }
+            store(key, result);
+            pendings.remove(key, future);
             future.complete(result);
             Platform.runLater(observable::invalidate);
         });
@@ -105,16 +101,15 @@ public class ObservableCache<K, V, E extends Exception> {
     }
 
     public V get(K key) {
-        V cached;
-        synchronized (this) {
-            cached = cache.get(key);
-            if (cached != null && !invalidated.containsKey(key)) {
-                return cached;
-            }
+        V cached = cache.get(key);
+        if (cached != null && !invalidated.contains(key)) {
+            return cached;
         }
 
         try {
-            return query(key, Runnable::run).join();
+            V result = query(key, Runnable::run).join();
+            if (result != null)
+                return result;
         } catch (CompletionException | CancellationException ignored) {
         }
 
@@ -141,16 +136,13 @@ public class ObservableCache<K, V, E extends Exception> {
     public ObjectBinding<V> binding(K key, boolean quiet) {
         // This method is thread-safe because ObservableHelper supports concurrent modification
         return Bindings.createObjectBinding(() -> {
-            V result;
+            V result = cache.get(key);
             boolean refresh;
-            synchronized (this) {
-                result = cache.get(key);
-                if (result == null) {
-                    result = fallbackValue;
-                    refresh = true;
-                } else {
-                    refresh = invalidated.containsKey(key);
-                }
+            if (result == null) {
+                result = fallbackValue;
+                refresh = true;
+            } else {
+                refresh = invalidated.contains(key);
             }
             if (!quiet && refresh) {
                 query(key, executor);
@@ -160,10 +152,8 @@ public class ObservableCache<K, V, E extends Exception> {
     }
 
     public void invalidate(K key) {
-        synchronized (this) {
-            if (cache.containsKey(key)) {
-                invalidated.put(key, Boolean.TRUE);
-            }
+        if (cache.containsKey(key)) {
+            invalidated.add(key);
         }
         Platform.runLater(observable::invalidate);
     }
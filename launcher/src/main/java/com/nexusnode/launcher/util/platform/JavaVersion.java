@@ -18,6 +18,7 @@
 package com.nexusnode.launcher.util.platform;
 
 import com.nexusnode.launcher.util.Lang;
+import com.nexusnode.launcher.util.PersistentIndex;
 import com.nexusnode.launcher.util.StringUtils;
 import com.nexusnode.launcher.util.versioning.VersionNumber;
 
@@ -27,9 +28,20 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,6 +49,7 @@ import java.util.stream.Stream;
 
 import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static com.nexusnode.launcher.util.Logging.LOG;
 
 /**
@@ -49,13 +62,24 @@ public final class JavaVersion {
     private final Path binary;
     private final String longVersion;
     private final Platform platform;
+    private final String vmName;
     private final int version;
+    private final int majorVersion;
 
     public JavaVersion(Path binary, String longVersion, Platform platform) {
+        this(binary, longVersion, platform, null);
+    }
+
+    /**
+     * @param vmName the name of the virtual machine, for example "OpenJDK 64-Bit Server VM", null if unknown
+     */
+    public JavaVersion(Path binary, String longVersion, Platform platform, String vmName) {
         this.binary = binary;
         this.longVersion = longVersion;
         this.platform = platform;
+        this.vmName = vmName;
         version = parseVersion(longVersion);
+        majorVersion = parseMajorVersion(longVersion);
     }
 
     public Path getBinary() {
@@ -70,6 +94,23 @@ public final class JavaVersion {
         return platform;
     }
 
+    /**
+     * @return the name of the virtual machine, null if unknown.
+     */
+    public String getVmName() {
+        return vmName;
+    }
+
+    /**
+     * HotSpot, which OpenJDK builds other than OpenJ9 ship, names its virtual machines "Server VM" or "Client VM",
+     * prefixed by "Java HotSpot(TM)" in Oracle builds.
+     *
+     * @return true if the virtual machine is known to be HotSpot, the only one accepting its -XX options.
+     */
+    public boolean isHotSpot() {
+        return vmName != null && (vmName.contains("HotSpot") || vmName.contains("Server VM") || vmName.contains("Client VM"));
+    }
+
     public VersionNumber getVersionNumber() {
         return VersionNumber.asVersion(longVersion);
     }
@@ -85,7 +126,17 @@ public final class JavaVersion {
         return version;
     }
 
+    /**
+     * The feature release number of Java installation, for example 8 for 1.8.0_181 and 17 for 17.0.1.
+     *
+     * @return the feature release number, or {@link #UNKNOWN} if not recognized.
+     */
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
     private static final Pattern REGEX = Pattern.compile("version \"(?<version>(.*?))\"");
+    private static final Pattern VM = Pattern.compile("^(?<vm>.* VM) \\(");
     private static final Pattern VERSION = Pattern.compile("^(?<version>[0-9]+)");
 
     public static final int UNKNOWN = -1;
@@ -93,6 +144,18 @@ public final class JavaVersion {
     public static final int JAVA_8 = 80;
     public static final int JAVA_9_AND_LATER = 90;
 
+    private static int parseMajorVersion(String version) {
+        Matcher matcher = VERSION.matcher(version);
+        if (!matcher.find())
+            return UNKNOWN;
+        int head = Lang.parseInt(matcher.group(), UNKNOWN);
+        if (head != 1)
+            return head;
+        // 1.x versions before Java 9
+        matcher = VERSION.matcher(version.substring(matcher.end()).replaceFirst("^\\.", ""));
+        return matcher.find() ? Lang.parseInt(matcher.group(), UNKNOWN) : UNKNOWN;
+    }
+
     private static int parseVersion(String version) {
         Matcher matcher = VERSION.matcher(version);
         if (matcher.find()) {
@@ -110,6 +173,7 @@ public final class JavaVersion {
     public static JavaVersion fromExecutable(Path executable) throws IOException {
         Platform platform = Platform.BIT_32;
         String version = null;
+        String vmName = null;
 
         executable = executable.toRealPath();
 
@@ -119,6 +183,9 @@ public final class JavaVersion {
                 Matcher m = REGEX.matcher(line);
                 if (m.find())
                     version = m.group("version");
+                Matcher vm = VM.matcher(line);
+                if (vm.find())
+                    vmName = vm.group("vm");
                 if (line.contains("64-Bit"))
                     platform = Platform.BIT_64;
             }
@@ -130,7 +197,7 @@ public final class JavaVersion {
         if (parseVersion(version) == UNKNOWN)
             throw new IOException("Unrecognized Java version " + version);
 
-        return new JavaVersion(executable, version, platform);
+        return new JavaVersion(executable, version, platform, vmName);
     }
 
     private static Path getExecutable(Path javaHome) {
@@ -157,9 +224,12 @@ public final class JavaVersion {
         CURRENT_JAVA = new JavaVersion(
                 currentExecutable,
                 System.getProperty("java.version"),
-                Platform.PLATFORM);
+                Platform.PLATFORM,
+                System.getProperty("java.vm.name"));
     }
 
+    private static final int MAX_PROBING_THREADS = 8;
+
     private static List<JavaVersion> JAVAS;
     private static final CountDownLatch LATCH = new CountDownLatch(1);
 
@@ -170,14 +240,25 @@ public final class JavaVersion {
         return JAVAS;
     }
 
-    public static synchronized void initialize() {
+    public static void initialize() {
+        initialize(null);
+    }
+
+    /**
+     * Discovers Java installations.
+     * Installations whose executable is unchanged since discovered before are read from {@code cacheFile},
+     * new or changed ones are probed concurrently.
+     *
+     * @param cacheFile where discovered installations are remembered, null if not remembered.
+     */
+    public static synchronized void initialize(Path cacheFile) {
         if (JAVAS != null)
             throw new IllegalStateException("JavaVersions have already been initialized.");
 
         List<JavaVersion> javaVersions;
 
         try {
-            javaVersions = lookupJavas(searchPotentialJavaHomes());
+            javaVersions = lookupJavas(searchPotentialJavaHomes(), new DiscoveryCache(cacheFile));
         } catch (IOException e) {
             LOG.log(Level.WARNING, "Failed to search Java homes", e);
             javaVersions = new ArrayList<>();
@@ -192,8 +273,8 @@ public final class JavaVersion {
         LATCH.countDown();
     }
 
-    private static List<JavaVersion> lookupJavas(Stream<Path> javaHomes) {
-        return javaHomes
+    private static List<JavaVersion> lookupJavas(Stream<Path> javaHomes, DiscoveryCache cache) {
+        List<Path> executables = javaHomes
                 .filter(Files::isDirectory)
                 .map(JavaVersion::getExecutable)
                 .filter(Files::isExecutable)
@@ -206,18 +287,62 @@ public final class JavaVersion {
                     }
                 })
                 .distinct() // remove duplicated javas
-                .flatMap(executable -> {
-                    if (executable.equals(CURRENT_JAVA.getBinary())) {
-                        return Stream.of(CURRENT_JAVA);
-                    }
+                .collect(toList());
+
+        List<JavaVersion> javas = new ArrayList<>(Collections.nCopies(executables.size(), null));
+        Map<Integer, Path> unknown = new TreeMap<>();
+        for (int i = 0; i < executables.size(); i++) {
+            Path executable = executables.get(i);
+            if (executable.equals(CURRENT_JAVA.getBinary())) {
+                javas.set(i, CURRENT_JAVA);
+                continue;
+            }
+
+            JavaVersion cached = cache.get(executable);
+            if (cached != null)
+                javas.set(i, cached);
+            else
+                unknown.put(i, executable);
+        }
+
+        if (!unknown.isEmpty()) {
+            ExecutorService prober = Executors.newFixedThreadPool(Math.min(unknown.size(), MAX_PROBING_THREADS), runnable -> {
+                Thread thread = new Thread(runnable, "Java Probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                Map<Integer, Future<JavaVersion>> probes = new TreeMap<>();
+                unknown.forEach((i, executable) -> probes.put(i, prober.submit(() -> {
                     try {
-                        return Stream.of(fromExecutable(executable));
+                        JavaVersion java = fromExecutable(executable);
+                        cache.put(java);
+                        return java;
                     } catch (IOException e) {
                         LOG.log(Level.WARNING, "Failed to determine Java at " + executable, e);
-                        return Stream.empty();
+                        return null;
                     }
-                })
-                .collect(toList());
+                })));
+
+                for (Map.Entry<Integer, Future<JavaVersion>> probe : probes.entrySet()) {
+                    try {
+                        javas.set(probe.getKey(), probe.getValue().get());
+                    } catch (ExecutionException e) {
+                        LOG.log(Level.WARNING, "Failed to determine Java at " + unknown.get(probe.getKey()), e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                prober.shutdownNow();
+            }
+        }
+
+        cache.retainAll(executables);
+        cache.save();
+
+        javas.removeIf(Objects::isNull);
+        return javas;
     }
 
     private static Stream<Path> searchPotentialJavaHomes() throws IOException {
@@ -251,6 +376,78 @@ public final class JavaVersion {
         }
     }
 
+    /**
+     * Remembers probed Java installations by the real path, size and last modified time of their executables.
+     */
+    private static final class DiscoveryCache {
+        private final PersistentIndex<Entry> entries;
+
+        DiscoveryCache(Path cacheFile) {
+            this.entries = new PersistentIndex<>(cacheFile, "javas", Entry.class);
+        }
+
+        /**
+         * @return the installation probed before, null if never probed or changed since.
+         */
+        JavaVersion get(Path executable) {
+            Entry entry = entries.get(executable.toString());
+            // Entries remembered before the name of the virtual machine was recorded are probed again.
+            if (entry == null || entry.version == null || entry.platform == null || entry.vmName == null)
+                return null;
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(executable, BasicFileAttributes.class);
+                if (attributes.size() != entry.size || attributes.lastModifiedTime().toMillis() != entry.lastModified)
+                    return null;
+            } catch (IOException e) {
+                return null;
+            }
+            if (parseVersion(entry.version) == UNKNOWN)
+                return null;
+            return new JavaVersion(executable, entry.version, entry.platform, entry.vmName.isEmpty() ? null : entry.vmName);
+        }
+
+        void put(JavaVersion java) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(java.getBinary(), BasicFileAttributes.class);
+                entries.put(java.getBinary().toString(),
+                        new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), java.getVersion(), java.getPlatform(), Optional.ofNullable(java.getVmName()).orElse("")));
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Unable to remember Java at " + java.getBinary(), e);
+            }
+        }
+
+        void retainAll(Collection<Path> executables) {
+            entries.retainKeys(executables.stream().map(Path::toString).collect(toSet()));
+        }
+
+        void save() {
+            entries.save();
+        }
+
+        private static final class Entry {
+            private final long size;
+            private final long lastModified;
+            private final String version;
+            private final Platform platform;
+            private final String vmName;
+
+            /**
+             * For Gson.
+             */
+            public Entry() {
+                this(0, 0, null, null, null);
+            }
+
+            public Entry(long size, long lastModified, String version, Platform platform, String vmName) {
+                this.size = size;
+                this.lastModified = lastModified;
+                this.version = version;
+                this.platform = platform;
+                this.vmName = vmName;
+            }
+        }
+    }
+
     // ==== Windows Registry Support ====
     private static List<Path> queryJavaHomesInRegistryKey(String location) throws IOException {
         List<Path> homes = new ArrayList<>();
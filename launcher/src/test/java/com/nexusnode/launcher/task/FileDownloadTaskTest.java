@@ -0,0 +1,144 @@
+/*
+ * Crafting Dead Launcher
+ * Copyright (C) 2020  bluebird6900  and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nexusnode.launcher.task;
+
+import com.nexusnode.launcher.util.DigestUtils;
+import com.nexusnode.launcher.util.Hex;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FileDownloadTaskTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int CHUNK = 64 * 1024;
+
+    private final byte[] data = new byte[(int) FileDownloadTask.SEGMENTED_THRESHOLD + 1536 * 1024];
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicInteger concurrentRanges = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRanges = new AtomicInteger();
+    private ExecutorService serverThreads;
+    private HttpServer server;
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(data);
+        directory = Files.createTempDirectory("download-test");
+
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/file.bin", this::serve);
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Serves {@link #data} slowly, so that segments are downloaded by several connections at the same time.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0, end = data.length;
+            if (range == null) {
+                exchange.sendResponseHeaders(200, data.length);
+            } else {
+                Matcher matcher = RANGE.matcher(range);
+                if (!matcher.matches()) {
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                start = Integer.parseInt(matcher.group(1));
+                end = Integer.parseInt(matcher.group(2)) + 1;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + data.length);
+                exchange.sendResponseHeaders(206, end - start);
+
+                rangeRequests.incrementAndGet();
+                int concurrent = concurrentRanges.incrementAndGet();
+                maxConcurrentRanges.accumulateAndGet(concurrent, Math::max);
+            }
+
+            try (OutputStream output = exchange.getResponseBody()) {
+                for (int position = start; position < end; position += CHUNK) {
+                    output.write(data, position, Math.min(CHUNK, end - position));
+                    output.flush();
+                    Thread.sleep(10);
+                }
+            } finally {
+                if (range != null)
+                    concurrentRanges.decrementAndGet();
+            }
+        } catch (IOException | InterruptedException e) {
+            // the client closed the response without reading the whole body.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Test
+    public void testSegmentedDownloadCompletes() throws Exception {
+        URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/file.bin");
+        File file = directory.resolve("file.bin").toFile();
+        String sha1 = Hex.encodeHex(DigestUtils.digest("SHA-1", data));
+
+        FileDownloadTask task = new FileDownloadTask(url, file, new FileDownloadTask.IntegrityCheck("SHA-1", sha1), 1) {
+            @Override
+            protected void updateProgress(double progress) {
+                // JavaFX is not running in tests.
+            }
+        };
+        task.execute();
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        assertEquals(6, rangeRequests.get());
+        assertTrue("Segments were not downloaded concurrently", maxConcurrentRanges.get() > 1);
+        assertFalse(Files.exists(directory.resolve("file.bin.part")));
+        assertFalse(Files.exists(directory.resolve("file.bin.part.json")));
+    }
+}